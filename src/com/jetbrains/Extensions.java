@@ -30,5 +30,115 @@ public enum Extensions {
     /**
      * Opts-in {@link com.jetbrains.SystemUtils#shrinkingGC}
      */
-    SHRINKING_GC
+    SHRINKING_GC,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontMetricsAccessor#codePointWidths} methods
+     */
+    FONT_METRICS_BULK_WIDTHS,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontMetricsAccessor#setOverride(java.awt.FontMetrics, int[], float[])}
+     */
+    FONT_METRICS_TABLE_OVERRIDE,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontMetricsAccessor#setOverrides} and
+     * {@link com.jetbrains.FontMetricsAccessor#getOverriddenMetrics}
+     */
+    FONT_METRICS_BATCH_OVERRIDE,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontExtensions#getShapingCache}
+     */
+    SHAPING_CACHE,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontExtensions#internFontWithFeatures}
+     */
+    FONT_INTERNING,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontExtensions#getAvailableFeatureSet}
+     */
+    FONT_FEATURE_SET,
+
+    /**
+     * Opts-in {@link com.jetbrains.FontExtensions#setSubpixelResolution(float, float, java.awt.Dimension)},
+     * {@link com.jetbrains.FontExtensions#getSubpixelResolution(float)} and
+     * {@link com.jetbrains.FontExtensions#getGlyphCacheStatistics()}
+     */
+    SUBPIXEL_RESOLUTION_CONTROL,
+
+    /**
+     * Opts-in {@link com.jetbrains.Screenshoter} methods capturing into a caller-supplied buffer
+     */
+    SCREENSHOTER_BUFFER_CAPTURE,
+
+    /**
+     * Opts-in {@link com.jetbrains.Screenshoter#createCaptureSession}
+     */
+    SCREENSHOTER_CAPTURE_SESSION,
+
+    /**
+     * Opts-in {@link com.jetbrains.Screenshoter#getWindowBackbufferAreaAsync} and
+     * {@link com.jetbrains.Screenshoter#getWindowSurfaceAreaAsync}
+     */
+    SCREENSHOTER_ASYNC_CAPTURE,
+
+    /**
+     * Opts-in {@link com.jetbrains.Screenshoter#startFrameStream}
+     */
+    SCREENSHOTER_FRAME_STREAM,
+
+    /**
+     * Opts-in {@link com.jetbrains.Screenshoter} methods capturing scaled images
+     */
+    SCREENSHOTER_SCALED_CAPTURE,
+
+    /**
+     * Opts-in {@link com.jetbrains.NativeRasterLoader#loadNativeRaster(java.awt.image.VolatileImage, long, int, int, java.nio.IntBuffer, int)}
+     */
+    NATIVE_RASTER_JAVA_RECTS,
+
+    /**
+     * Opts-in {@link com.jetbrains.NativeRasterLoader#loadNativeRaster(java.awt.image.VolatileImage, java.nio.ByteBuffer, int, int, java.nio.IntBuffer, int)}
+     */
+    NATIVE_RASTER_BUFFERS,
+
+    /**
+     * Opts-in {@link com.jetbrains.SharedTextures#wrapTexture(java.awt.GraphicsConfiguration, java.nio.ByteBuffer, int, int, int)}
+     */
+    SOFTWARE_TEXTURES,
+
+    /**
+     * Opts-in {@link com.jetbrains.Vulkan#setDeviceSelector} and {@link com.jetbrains.Vulkan#getActiveDevice}
+     */
+    VULKAN_DEVICE_SELECTION,
+
+    /**
+     * Opts-in {@link com.jetbrains.Vulkan#getSnapshot} and {@link com.jetbrains.Vulkan} state listeners
+     */
+    VULKAN_STATE_TRACKING,
+
+    /**
+     * Opts-in {@link com.jetbrains.Vulkan.Device#getUploadPath} methods
+     */
+    VULKAN_UPLOAD_PATH,
+
+    /**
+     * Opts-in {@link com.jetbrains.SystemUtils#scheduleGC}
+     */
+    ASYNC_GC,
+
+    /**
+     * Opts-in {@link com.jetbrains.SystemUtils#shrinkingGC(int)} and
+     * {@link com.jetbrains.SystemUtils#shrinkingGCToSize(long)}
+     */
+    SHRINKING_GC_TARGET,
+
+    /**
+     * Opts-in {@link com.jetbrains.SystemUtils#clearSoftReferences}
+     */
+    SOFT_REFERENCE_EVICTION
 }
@@ -17,6 +17,8 @@
 package com.jetbrains;
 
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.util.*;
 
 /**
@@ -289,6 +291,46 @@ public interface FontExtensions {
      */
     Font deriveFontWithFeatures(Font font, String... features);
 
+    /**
+     * Immutable set of OpenType features supported by a font. Unlike the set returned by
+     * {@link #getAvailableFeatures(Font)}, queries don't allocate.
+     * @see #getAvailableFeatureSet(Font)
+     */
+    @Provided
+    interface FeatureSet {
+        /**
+         * Check whether the set contains given feature.
+         * @param tag feature tag, like {@link FeatureTag#ZERO} or {@code kern}
+         * @return true if the set contains given feature
+         */
+        boolean contains(String tag);
+
+        /**
+         * Get number of features in the set.
+         * @return number of features in the set
+         */
+        int size();
+
+        /**
+         * Get feature tags in the set.
+         * @return new array of feature tags in the set, sorted alphabetically
+         */
+        String[] toArray();
+    }
+
+    /**
+     * Same as {@link #deriveFontWithFeatures}, but returns the same {@link Font} instance for equal base fonts
+     * and equal feature sets, as long as that instance is still reachable. This allows caches keyed by font
+     * identity, like font metrics, to be reused for fonts derived repeatedly.
+     * Feature sets are normalized before comparison: order of features doesn't matter, {@code <name>} is
+     * equivalent to {@code <name>=1}, and for a repeated feature the last value is used.
+     * @param font       basic font
+     * @param features   set of OpenType's features
+     * @return canonical font instance with given features
+     */
+    @Extension(Extensions.FONT_INTERNING)
+    Font internFontWithFeatures(Font font, String... features);
+
     /**
      * This method returns an array of features for the given font, set via {@link #deriveFontWithFeatures}.
      * Feature syntax is {@code <name>} or {@code <name>=<int>}, like {@code kern}, or {@code aalt=2}.
@@ -304,6 +346,17 @@ public interface FontExtensions {
      */
     Set<String> getAvailableFeatures(Font font);
 
+    /**
+     * Compact alternative to {@link #getAvailableFeatures(Font)}. Sets are cached per font file, so repeated calls
+     * with the same font, or with fonts derived from it by size, style or transform, return the same instance
+     * without allocating. The set contains the same features as {@link #getAvailableFeatures(Font)}, including
+     * {@code kern}, {@code liga} and {@code calt}, which are not listed in {@link FeatureTag}.
+     * @param font the font
+     * @return immutable set of supported features
+     */
+    @Extension(Extensions.FONT_FEATURE_SET)
+    FeatureSet getAvailableFeatureSet(Font font);
+
     /**
      * Get subpixel resolution for rendering text with greyscale antialiasing,
      * set with {@code -Djava2d.font.subpixelResolution=NxM}, with integers
@@ -315,4 +368,262 @@ public interface FontExtensions {
      * @return subpixel resolution (N, M)
      */
     Dimension getSubpixelResolution();
-}
\ No newline at end of file
+
+    /**
+     * Overrides subpixel resolution (see {@link #getSubpixelResolution()}) for glyphs rendered with font size
+     * in the given range, allowing e.g. to use higher resolution only for small fonts. Size is measured
+     * in device pixels, after applying the rendering transform. A later call takes precedence over earlier
+     * calls for overlapping ranges. Glyphs already in the cache are not affected.
+     * @param minSize    minimum font size, inclusive
+     * @param maxSize    maximum font size, exclusive
+     * @param resolution subpixel resolution (N, M) with values between 1 and 16,
+     *                   or {@code null} to use the default resolution for the range
+     * @throws IllegalArgumentException if the range is empty, or resolution is out of bounds
+     */
+    @Extension(Extensions.SUBPIXEL_RESOLUTION_CONTROL)
+    void setSubpixelResolution(float minSize, float maxSize, Dimension resolution);
+
+    /**
+     * Get subpixel resolution used for glyphs of the given font size,
+     * taking {@link #setSubpixelResolution(float, float, Dimension)} into account.
+     * @param size font size in device pixels
+     * @return subpixel resolution (N, M)
+     */
+    @Extension(Extensions.SUBPIXEL_RESOLUTION_CONTROL)
+    Dimension getSubpixelResolution(float size);
+
+    /**
+     * Returns current state of the glyph cache, which can be used to choose
+     * {@linkplain #setSubpixelResolution(float, float, Dimension) subpixel resolution} at runtime.
+     * @return glyph cache statistics snapshot
+     */
+    @Extension(Extensions.SUBPIXEL_RESOLUTION_CONTROL)
+    GlyphCacheStatistics getGlyphCacheStatistics();
+
+    /**
+     * Snapshot of glyph cache occupancy.
+     * @see #getGlyphCacheStatistics()
+     */
+    @Provided
+    interface GlyphCacheStatistics {
+        /**
+         * Get number of cached glyph images.
+         * @return number of rasterized glyph images in the cache, counting each subpixel position separately
+         */
+        long getGlyphCount();
+
+        /**
+         * Get memory used by the glyph cache.
+         * @return memory used by cached glyph images, in bytes
+         */
+        long getMemoryUsage();
+
+        /**
+         * Get glyph cache capacity.
+         * @return maximum memory available for cached glyph images, in bytes, or -1 if unbounded
+         */
+        long getMemoryCapacity();
+    }
+
+    /**
+     * Returns a shared cache of shaped text runs. Shaping the same string with the same font
+     * (including its {@linkplain #deriveFontWithFeatures features}) and rendering context
+     * is only done once, as long as the result stays in the cache.
+     * @return shaping cache
+     * @see ReferenceShapingCache
+     */
+    @Extension(Extensions.SHAPING_CACHE)
+    ShapingCache getShapingCache();
+
+    /**
+     * Bounded cache of shaped text runs, evicting least recently used entries.
+     */
+    @Provided
+    interface ShapingCache {
+        /**
+         * Shapes the text left-to-right, or returns the cached result of a previous identical request.
+         * @param font    font to shape the text with
+         * @param context font render context
+         * @param text    text to shape
+         * @return shaped run
+         */
+        ShapedRun shape(Font font, FontRenderContext context, String text);
+
+        /**
+         * Get number of cache hits.
+         * @return number of {@link #shape} calls answered from the cache
+         */
+        long getHitCount();
+
+        /**
+         * Get number of cache misses.
+         * @return number of {@link #shape} calls which required shaping
+         */
+        long getMissCount();
+
+        /**
+         * Get cache capacity.
+         * @return maximum number of runs kept in the cache
+         */
+        int getCapacity();
+
+        /**
+         * Removes all runs from the cache. Hit and miss counters are not reset.
+         */
+        void clear();
+    }
+
+    /**
+     * Result of text shaping. Returned arrays are shared with the cache and must not be modified.
+     */
+    @Provided
+    interface ShapedRun {
+        /**
+         * Get glyph codes.
+         * @return glyph codes, in visual order
+         */
+        int[] getGlyphCodes();
+
+        /**
+         * Get glyph advances.
+         * @return horizontal advance of each glyph
+         */
+        float[] getAdvances();
+
+        /**
+         * Get glyph clusters.
+         * @return index of the first character of the cluster each glyph belongs to
+         */
+        int[] getClusters();
+    }
+
+    /**
+     * Pure-Java {@link ShapingCache} implementation based on
+     * {@link Font#layoutGlyphVector(FontRenderContext, char[], int, int, int)}.
+     * Useful for testing, or as a replacement when {@link #getShapingCache()} is not supported.
+     */
+    final class ReferenceShapingCache implements ShapingCache {
+        private final int capacity;
+        private final Map<Key, ShapedRun> runs;
+        private long hits, misses;
+
+        /**
+         * Creates an empty cache with the given capacity.
+         * @param capacity maximum number of runs kept in the cache
+         * @throws IllegalArgumentException if capacity is not positive
+         */
+        public ReferenceShapingCache(int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+            this.capacity = capacity;
+            runs = new LinkedHashMap<Key, ShapedRun>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, ShapedRun> eldest) {
+                    return size() > ReferenceShapingCache.this.capacity;
+                }
+            };
+        }
+
+        @Override
+        public ShapedRun shape(Font font, FontRenderContext context, String text) {
+            Key key = new Key(font, context, text);
+            synchronized (runs) {
+                ShapedRun run = runs.get(key);
+                if (run != null) {
+                    hits++;
+                    return run;
+                }
+            }
+            // Shape outside the lock, concurrent misses for the same key just do redundant work.
+            ShapedRun run = new Run(font.layoutGlyphVector(context, text.toCharArray(), 0, text.length(),
+                    Font.LAYOUT_LEFT_TO_RIGHT));
+            synchronized (runs) {
+                misses++;
+                runs.put(key, run);
+            }
+            return run;
+        }
+
+        @Override
+        public long getHitCount() {
+            synchronized (runs) {
+                return hits;
+            }
+        }
+
+        @Override
+        public long getMissCount() {
+            synchronized (runs) {
+                return misses;
+            }
+        }
+
+        @Override
+        public int getCapacity() {
+            return capacity;
+        }
+
+        @Override
+        public void clear() {
+            synchronized (runs) {
+                runs.clear();
+            }
+        }
+
+        private static final class Key {
+            private final Font font;
+            private final FontRenderContext context;
+            private final String text;
+            private final int hash;
+
+            private Key(Font font, FontRenderContext context, String text) {
+                this.font = font;
+                this.context = context;
+                this.text = text;
+                hash = (font.hashCode() * 31 + context.hashCode()) * 31 + text.hashCode();
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof Key)) return false;
+                Key key = (Key) o;
+                return hash == key.hash && text.equals(key.text) &&
+                        context.equals(key.context) && font.equals(key.font);
+            }
+
+            @Override
+            public int hashCode() {
+                return hash;
+            }
+        }
+
+        private static final class Run implements ShapedRun {
+            private final int[] glyphCodes, clusters;
+            private final float[] advances;
+
+            private Run(GlyphVector gv) {
+                int numGlyphs = gv.getNumGlyphs();
+                glyphCodes = gv.getGlyphCodes(0, numGlyphs, null);
+                clusters = gv.getGlyphCharIndices(0, numGlyphs, null);
+                float[] positions = gv.getGlyphPositions(0, numGlyphs + 1, null);
+                advances = new float[numGlyphs];
+                for (int i = 0; i < numGlyphs; i++) advances[i] = positions[i * 2 + 2] - positions[i * 2];
+            }
+
+            @Override
+            public int[] getGlyphCodes() {
+                return glyphCodes;
+            }
+
+            @Override
+            public float[] getAdvances() {
+                return advances;
+            }
+
+            @Override
+            public int[] getClusters() {
+                return clusters;
+            }
+        }
+    }
+}
@@ -19,6 +19,10 @@ package com.jetbrains;
 import java.awt.*;
 import java.awt.font.FontRenderContext;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * Provides convenience methods to access {@link java.awt.FontMetrics} instances, and obtain character advances from them without
@@ -48,6 +52,58 @@ public interface FontMetricsAccessor {
      */
     float codePointWidth(FontMetrics metrics, int codePoint);
 
+    /**
+     * Bulk version of {@link #codePointWidth(FontMetrics, int)}. Stores not rounded advances of all code points in the
+     * specified range of the text into the given array, one value per code point. Surrogate pairs occupy a single
+     * element in the {@code advances} array, unpaired surrogates are measured as separate code points.
+     * @param metrics        font metrics object
+     * @param text           text to measure
+     * @param beginIndex     index of the first character to measure
+     * @param limit          index following the last character to measure
+     * @param advances       array receiving the advances
+     * @param advancesOffset index of the first element in {@code advances} to store the result into
+     * @return number of code points measured, i.e. number of values stored into {@code advances}
+     * @throws IndexOutOfBoundsException if {@code beginIndex} or {@code limit} are out of the text bounds,
+     *         or {@code advances} cannot hold all the values
+     */
+    @Extension(Extensions.FONT_METRICS_BULK_WIDTHS)
+    int codePointWidths(FontMetrics metrics, CharSequence text, int beginIndex, int limit,
+                        float[] advances, int advancesOffset);
+
+    /**
+     * Bulk version of {@link #codePointWidth(FontMetrics, int)}. Stores not rounded advances of all code points in the
+     * specified range of the text into the given array, one value per code point. Surrogate pairs occupy a single
+     * element in the {@code advances} array, unpaired surrogates are measured as separate code points.
+     * @param metrics        font metrics object
+     * @param text           text to measure
+     * @param beginIndex     index of the first character to measure
+     * @param limit          index following the last character to measure
+     * @param advances       array receiving the advances
+     * @param advancesOffset index of the first element in {@code advances} to store the result into
+     * @return number of code points measured, i.e. number of values stored into {@code advances}
+     * @throws IndexOutOfBoundsException if {@code beginIndex} or {@code limit} are out of the text bounds,
+     *         or {@code advances} cannot hold all the values
+     */
+    @Extension(Extensions.FONT_METRICS_BULK_WIDTHS)
+    int codePointWidths(FontMetrics metrics, char[] text, int beginIndex, int limit,
+                        float[] advances, int advancesOffset);
+
+    /**
+     * Bulk version of {@link #codePointWidth(FontMetrics, int)}. Stores not rounded advances of the code points from
+     * the specified range of the array into the given array.
+     * @param metrics        font metrics object
+     * @param codePoints     code points to measure
+     * @param beginIndex     index of the first code point to measure
+     * @param limit          index following the last code point to measure
+     * @param advances       array receiving the advances
+     * @param advancesOffset index of the first element in {@code advances} to store the result into
+     * @throws IndexOutOfBoundsException if {@code beginIndex} or {@code limit} are out of the
+     *         {@code codePoints} bounds, or {@code advances} cannot hold all the values
+     */
+    @Extension(Extensions.FONT_METRICS_BULK_WIDTHS)
+    void codePointWidths(FontMetrics metrics, int[] codePoints, int beginIndex, int limit,
+                         float[] advances, int advancesOffset);
+
     /**
      * Allows to override advance values returned by the specified {@link FontMetrics} instance. It's not generally
      * guaranteed the invocation of this method actually has the desired effect. One can verify whether it's the case
@@ -73,6 +129,25 @@ public interface FontMetricsAccessor {
      */
     void setOverride(FontMetrics metrics, Overrider overrider);
 
+    /**
+     * Table-based version of {@link #setOverride(FontMetrics, Overrider)}, which overrides advances of all code points
+     * in the given ranges with fixed values. Unlike {@link Overrider}, the table can be looked up by the runtime without
+     * calling back into the client code for each code point. Code points outside the ranges, as well as ranges with
+     * {@code NaN} advance, keep their default (not overridden) values.
+     * <p>
+     * Arrays are copied, so changing them after the call has no effect. Other than that, this method follows the
+     * same rules as {@link #setOverride(FontMetrics, Overrider)}, including the warning about application consistency.
+     * Passing {@code null} as the overrider to that method removes the override set by this one.
+     *
+     * @param metrics         font metrics to override
+     * @param codePointRanges pairs of the first and the last code points of each range, inclusive.
+     *                        Ranges must be sorted in ascending order and must not overlap
+     * @param advances        advance for each range, its length is half the length of {@code codePointRanges}
+     * @throws IllegalArgumentException if ranges are malformed, or the arrays have inconsistent lengths
+     */
+    @Extension(Extensions.FONT_METRICS_TABLE_OVERRIDE)
+    void setOverride(FontMetrics metrics, int[] codePointRanges, float[] advances);
+
     /**
      * Tells whether character advances returned by the specified {@link FontMetrics} instance are overridden using the
      * previous {@link #setOverride(FontMetrics, Overrider)} call.
@@ -87,6 +162,48 @@ public interface FontMetricsAccessor {
      */
     void removeAllOverrides();
 
+    /**
+     * Batch version of {@link #setOverride(FontMetrics, Overrider)}, applying overrides for all given font metrics
+     * at once. Caches affected by the overrides are invalidated only once, after all overrides are applied.
+     * A {@code null} element in {@code overriders} removes the override for the corresponding font metrics.
+     * <p>
+     * Other than that, this method follows the same rules as {@link #setOverride(FontMetrics, Overrider)}, including
+     * the warning about application consistency.
+     *
+     * @param metrics    font metrics to override
+     * @param overriders override handlers, one per font metrics instance
+     * @throws IllegalArgumentException if the arrays have different lengths
+     */
+    @Extension(Extensions.FONT_METRICS_BATCH_OVERRIDE)
+    void setOverrides(FontMetrics[] metrics, Overrider[] overriders);
+
+    /**
+     * Batch version of {@link #setOverride(FontMetrics, int[], float[])}, applying table-based overrides for all given
+     * font metrics at once. Caches affected by the overrides are invalidated only once, after all overrides are
+     * applied. A {@code null} element in {@code codePointRanges} removes the override for the corresponding font
+     * metrics, the corresponding element in {@code advances} is ignored then.
+     * <p>
+     * Other than that, this method follows the same rules as {@link #setOverride(FontMetrics, int[], float[])},
+     * including the warning about application consistency.
+     *
+     * @param metrics         font metrics to override
+     * @param codePointRanges code point ranges, one table per font metrics instance,
+     *                        see {@link #setOverride(FontMetrics, int[], float[])}
+     * @param advances        advances for the ranges, one table per font metrics instance
+     * @throws IllegalArgumentException if the arrays have different lengths, or any of the tables is malformed
+     */
+    @Extension(Extensions.FONT_METRICS_BATCH_OVERRIDE)
+    void setOverrides(FontMetrics[] metrics, int[][] codePointRanges, float[][] advances);
+
+    /**
+     * Returns all font metrics instances which are currently
+     * {@linkplain #setOverride(FontMetrics, com.jetbrains.FontMetricsAccessor.Overrider) overridden}.
+     * This allows to re-validate only the components using affected fonts.
+     * @return overridden font metrics, empty array if there are none
+     */
+    @Extension(Extensions.FONT_METRICS_BATCH_OVERRIDE)
+    FontMetrics[] getOverriddenMetrics();
+
     /**
      * Font metrics override handler.
      * @see #setOverride(FontMetrics, Overrider)
@@ -104,31 +221,142 @@ public interface FontMetricsAccessor {
 }
 
 final class FontMetricsAccessor_Fallback implements FontMetricsAccessor {
-    private final Graphics2D g;
+    private static final int MAX_CACHED_CONTEXTS = 16;
+    private static final int MAX_CACHED_METRICS_PER_CONTEXT = 256;
+
+    private final BufferedImage image;
+    private final ConcurrentMap<FontRenderContext, ConcurrentMap<Font, FontMetrics>> metricsCache =
+            new ConcurrentHashMap<>();
+    private final ConcurrentMap<FontRenderContext, ConcurrentMap<Font, Advances>> advancesCache =
+            new ConcurrentHashMap<>();
 
     FontMetricsAccessor_Fallback() {
-        g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).createGraphics();
+        image = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
     }
 
     @Override
     public FontMetrics getMetrics(Font font, FontRenderContext context) {
-        synchronized (g) {
-            g.setTransform(context.getTransform());
-            g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, context.getAntiAliasingHint());
-            g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, context.getFractionalMetricsHint());
-            return g.getFontMetrics(font);
+        ConcurrentMap<Font, FontMetrics> fontMetrics = forContext(metricsCache, context);
+        FontMetrics metrics = fontMetrics.get(font);
+        if (metrics == null) {
+            // Use a fresh graphics instance instead of a shared one to avoid locking.
+            Graphics2D g = image.createGraphics();
+            try {
+                g.setTransform(context.getTransform());
+                g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, context.getAntiAliasingHint());
+                g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, context.getFractionalMetricsHint());
+                metrics = g.getFontMetrics(font);
+            } finally {
+                g.dispose();
+            }
+            if (fontMetrics.size() >= MAX_CACHED_METRICS_PER_CONTEXT) fontMetrics.clear();
+            FontMetrics existing = fontMetrics.putIfAbsent(font, metrics);
+            if (existing != null) metrics = existing;
         }
+        return metrics;
     }
 
     @Override
     public float codePointWidth(FontMetrics metrics, int codePoint) {
-        String s = new String(new int[]{codePoint}, 0, 1);
-        return (float) metrics.getFont().getStringBounds(s, metrics.getFontRenderContext()).getWidth();
+        return getAdvances(metrics).get(codePoint);
+    }
+
+    @Override
+    public int codePointWidths(FontMetrics metrics, CharSequence text, int beginIndex, int limit,
+                               float[] advances, int advancesOffset) {
+        checkRange(beginIndex, limit, text.length());
+        Advances cache = getAdvances(metrics);
+        int count = 0;
+        for (int i = beginIndex; i < limit; count++) {
+            int codePoint = text.charAt(i++);
+            if (Character.isHighSurrogate((char) codePoint) && i < limit && Character.isLowSurrogate(text.charAt(i))) {
+                codePoint = Character.toCodePoint((char) codePoint, text.charAt(i++));
+            }
+            advances[advancesOffset + count] = cache.get(codePoint);
+        }
+        return count;
+    }
+
+    @Override
+    public int codePointWidths(FontMetrics metrics, char[] text, int beginIndex, int limit,
+                               float[] advances, int advancesOffset) {
+        checkRange(beginIndex, limit, text.length);
+        Advances cache = getAdvances(metrics);
+        int count = 0;
+        for (int i = beginIndex; i < limit; count++) {
+            int codePoint = Character.codePointAt(text, i, limit);
+            i += Character.charCount(codePoint);
+            advances[advancesOffset + count] = cache.get(codePoint);
+        }
+        return count;
+    }
+
+    @Override
+    public void codePointWidths(FontMetrics metrics, int[] codePoints, int beginIndex, int limit,
+                                float[] advances, int advancesOffset) {
+        checkRange(beginIndex, limit, codePoints.length);
+        Advances cache = getAdvances(metrics);
+        for (int i = beginIndex; i < limit; i++) {
+            advances[advancesOffset + i - beginIndex] = cache.get(codePoints[i]);
+        }
+    }
+
+    private static void checkRange(int beginIndex, int limit, int length) {
+        if (beginIndex < 0 || limit > length || beginIndex > limit) {
+            throw new IndexOutOfBoundsException("beginIndex=" + beginIndex + ", limit=" + limit + ", length=" + length);
+        }
+    }
+
+    private Advances getAdvances(FontMetrics metrics) {
+        // Advances only depend on the font and context, so equal metrics instances share the cache.
+        Font font = metrics.getFont();
+        FontRenderContext context = metrics.getFontRenderContext();
+        ConcurrentMap<Font, Advances> fontAdvances = forContext(advancesCache, context);
+        Advances advances = fontAdvances.get(font);
+        if (advances == null) {
+            if (fontAdvances.size() >= MAX_CACHED_METRICS_PER_CONTEXT) fontAdvances.clear();
+            advances = new Advances(font, context);
+            Advances existing = fontAdvances.putIfAbsent(font, advances);
+            if (existing != null) advances = existing;
+        }
+        return advances;
+    }
+
+    private static <T> ConcurrentMap<Font, T> forContext(
+            ConcurrentMap<FontRenderContext, ConcurrentMap<Font, T>> cache, FontRenderContext context) {
+        // Plain get() first, as computeIfAbsent() may lock even when the mapping is already present.
+        ConcurrentMap<Font, T> map = cache.get(context);
+        if (map == null) {
+            if (cache.size() >= MAX_CACHED_CONTEXTS) cache.clear();
+            map = new ConcurrentHashMap<>();
+            ConcurrentMap<Font, T> existing = cache.putIfAbsent(context, map);
+            if (existing != null) map = existing;
+        }
+        return map;
     }
 
     @Override
     public void setOverride(FontMetrics metrics, Overrider overrider) {}
 
+    @Override
+    public void setOverride(FontMetrics metrics, int[] codePointRanges, float[] advances) {
+        checkTable(codePointRanges, advances);
+    }
+
+    private static void checkTable(int[] codePointRanges, float[] advances) {
+        if (codePointRanges.length != advances.length * 2) {
+            throw new IllegalArgumentException("Expected " + advances.length * 2 + " range bounds, got " +
+                    codePointRanges.length);
+        }
+        int previous = -1;
+        for (int i = 0; i < codePointRanges.length; i += 2) {
+            if (codePointRanges[i] <= previous || codePointRanges[i] > codePointRanges[i + 1]) {
+                throw new IllegalArgumentException("Code point ranges are not sorted or overlap at index " + i);
+            }
+            previous = codePointRanges[i + 1];
+        }
+    }
+
     @Override
     public boolean hasOverride(FontMetrics metrics) {
         return false;
@@ -136,4 +364,78 @@ final class FontMetricsAccessor_Fallback implements FontMetricsAccessor {
 
     @Override
     public void removeAllOverrides() {}
+
+    @Override
+    public void setOverrides(FontMetrics[] metrics, Overrider[] overriders) {
+        if (metrics.length != overriders.length) {
+            throw new IllegalArgumentException("Expected " + metrics.length + " overriders, got " + overriders.length);
+        }
+    }
+
+    @Override
+    public void setOverrides(FontMetrics[] metrics, int[][] codePointRanges, float[][] advances) {
+        if (metrics.length != codePointRanges.length || metrics.length != advances.length) {
+            throw new IllegalArgumentException("Expected " + metrics.length + " tables, got " +
+                    codePointRanges.length + " range tables and " + advances.length + " advance tables");
+        }
+        for (int i = 0; i < metrics.length; i++) {
+            if (codePointRanges[i] != null) checkTable(codePointRanges[i], advances[i]);
+        }
+    }
+
+    @Override
+    public FontMetrics[] getOverriddenMetrics() {
+        return new FontMetrics[0];
+    }
+
+    /**
+     * Lazily filled advance cache for a single font and rendering context.
+     * BMP advances are stored in dense pages, page tables for supplementary planes are allocated on first use.
+     * Not yet measured advances are marked with {@code NaN}.
+     */
+    private static final class Advances {
+        private static final int PAGE_SHIFT = 8, PAGE_SIZE = 1 << PAGE_SHIFT, PLANE_PAGES = 0x10000 >> PAGE_SHIFT;
+
+        private final Font font;
+        private final FontRenderContext context;
+        private final AtomicReferenceArray<float[]> bmp = new AtomicReferenceArray<>(PLANE_PAGES);
+        private final AtomicReferenceArray<AtomicReferenceArray<float[]>> supplementary =
+                new AtomicReferenceArray<>(Character.MAX_CODE_POINT >> 16);
+
+        private Advances(Font font, FontRenderContext context) {
+            this.font = font;
+            this.context = context;
+        }
+
+        private float get(int codePoint) {
+            if (!Character.isValidCodePoint(codePoint)) return measure(codePoint);
+            AtomicReferenceArray<float[]> plane;
+            int planeIndex = codePoint >> 16;
+            if (planeIndex == 0) plane = bmp;
+            else {
+                plane = supplementary.get(planeIndex - 1);
+                if (plane == null) {
+                    supplementary.compareAndSet(planeIndex - 1, null, new AtomicReferenceArray<>(PLANE_PAGES));
+                    plane = supplementary.get(planeIndex - 1);
+                }
+            }
+            int pageIndex = (codePoint & 0xFFFF) >> PAGE_SHIFT;
+            float[] page = plane.get(pageIndex);
+            if (page == null) {
+                page = new float[PAGE_SIZE];
+                Arrays.fill(page, Float.NaN);
+                if (!plane.compareAndSet(pageIndex, null, page)) page = plane.get(pageIndex);
+            }
+            int index = codePoint & (PAGE_SIZE - 1);
+            float advance = page[index];
+            // Concurrent measurements of the same code point are harmless, they produce the same value.
+            if (Float.isNaN(advance)) page[index] = advance = measure(codePoint);
+            return advance;
+        }
+
+        private float measure(int codePoint) {
+            String s = new String(new int[]{codePoint}, 0, 1);
+            return (float) font.getStringBounds(s, context).getWidth();
+        }
+    }
 }
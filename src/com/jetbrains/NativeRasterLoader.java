@@ -16,7 +16,20 @@
 
 package com.jetbrains;
 
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.image.VolatileImage;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Direct raster loading for VolatileImage.
@@ -37,4 +50,343 @@ public interface NativeRasterLoader {
      * @param rectsCount count of "dirty" rects (if 0 then whole image used)
      */
     void loadNativeRaster(VolatileImage vi, long pRaster, int width, int height, long pRects, int rectsCount);
+
+    /**
+     * Same as {@link #loadNativeRaster(VolatileImage, long, int, int, long, int)}, but takes "dirty" rects
+     * from a Java buffer, so they don't need to be copied into native memory by the caller.
+     *
+     * @param vi volatile image
+     * @param pRaster native pointer image raster with 8-bit RGBA color components packed into integer pixels.
+     * Note: The color data in this image is considered to be premultiplied with alpha.
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param rects buffer of "dirty" rects starting at its position, each rect is a sequence of four integers:
+     * x, y, width, heigth. Buffer's position is not changed.
+     * Note: can be null (then whole image used)
+     * @param rectsCount count of "dirty" rects (if 0 then whole image used)
+     * @throws IllegalArgumentException if the buffer has less than {@code rectsCount} rects remaining
+     * @see RectCoalescer
+     */
+    @Extension(Extensions.NATIVE_RASTER_JAVA_RECTS)
+    void loadNativeRaster(VolatileImage vi, long pRaster, int width, int height, IntBuffer rects, int rectsCount);
+
+    /**
+     * Same as {@link #loadNativeRaster(VolatileImage, long, int, int, IntBuffer, int)}, taking "dirty" rects
+     * from an array.
+     *
+     * @param vi volatile image
+     * @param pRaster native pointer image raster with 8-bit RGBA color components packed into integer pixels.
+     * Note: The color data in this image is considered to be premultiplied with alpha.
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param rects array of "dirty" rects, each rect is a sequence of four integers: x, y, width, heigth
+     * Note: can be null (then whole image used)
+     * @param rectsCount count of "dirty" rects (if 0 then whole image used)
+     * @throws IllegalArgumentException if the array has less than {@code rectsCount} rects
+     */
+    default void loadNativeRaster(VolatileImage vi, long pRaster, int width, int height, int[] rects, int rectsCount) {
+        loadNativeRaster(vi, pRaster, width, height, rects == null ? null : IntBuffer.wrap(rects), rectsCount);
+    }
+
+    /**
+     * Same as {@link #loadNativeRaster(VolatileImage, long, int, int, IntBuffer, int)}, but takes the raster
+     * from a direct buffer instead of a raw native pointer, so off-heap pixel data can be uploaded without
+     * obtaining its address. Pixels are read directly from the buffer memory, without copying.
+     * All bounds are validated before uploading.
+     *
+     * @param vi volatile image
+     * @param raster direct buffer with image raster starting at its position, 8-bit RGBA color components
+     * packed into integer pixels in native byte order. Buffer's position is not changed.
+     * Note: The color data in this image is considered to be premultiplied with alpha.
+     * @param width width of image in pixels
+     * @param height height of image in pixels
+     * @param rects buffer of "dirty" rects starting at its position, each rect is a sequence of four integers:
+     * x, y, width, heigth. Can be a view of a direct {@link ByteBuffer}. Buffer's position is not changed.
+     * Note: can be null (then whole image used)
+     * @param rectsCount count of "dirty" rects (if 0 then whole image used)
+     * @throws IllegalArgumentException if {@code raster} is not direct or has less than {@code width * height * 4}
+     * bytes remaining, if {@code rects} has less than {@code rectsCount} rects remaining,
+     * or if any rect is not within the image bounds
+     */
+    @Extension(Extensions.NATIVE_RASTER_BUFFERS)
+    void loadNativeRaster(VolatileImage vi, ByteBuffer raster, int width, int height, IntBuffer rects, int rectsCount);
+
+    /**
+     * Pipelined raster uploader with a fixed number of staging buffers. The producer renders a frame into an
+     * {@linkplain #acquireBuffer() acquired} buffer and {@linkplain #upload submits} it, then continues with
+     * the next frame in another buffer while the previous one is uploaded by the executor.
+     * <p>
+     * Frames can be uploaded into a {@link VolatileImage} using
+     * {@link #loadNativeRaster(VolatileImage, ByteBuffer, int, int, IntBuffer, int)}, or into a
+     * {@link BufferedImage#TYPE_INT_ARGB_PRE} {@link BufferedImage} in pure Java, which doesn't need native
+     * support and is useful for testing.
+     */
+    final class UploadPipeline {
+        private final NativeRasterLoader loader;
+        private final int width, height;
+        private static final int FREE = 0, ACQUIRED = 1, UPLOADING = 2;
+
+        private final ByteBuffer[] buffers;
+        private final AtomicIntegerArray bufferStates;
+        private final BlockingQueue<ByteBuffer> freeBuffers;
+        private final Executor executor;
+        private final AtomicLong stallTime = new AtomicLong();
+
+        /**
+         * Creates a pipeline and allocates its staging buffers.
+         * @param loader      loader used for uploading into volatile images, can be null if only
+         *                    buffered images are used
+         * @param width       width of frames in pixels
+         * @param height      height of frames in pixels
+         * @param bufferCount number of staging buffers, must be positive
+         * @param executor    executor performing uploads, frames are uploaded in submission order
+         *                    only if the executor runs tasks in order
+         * @throws IllegalArgumentException if any of the numeric parameters is not positive
+         */
+        public UploadPipeline(NativeRasterLoader loader, int width, int height, int bufferCount, Executor executor) {
+            if (width <= 0 || height <= 0 || bufferCount <= 0) {
+                throw new IllegalArgumentException("Frame size and buffer count must be positive");
+            }
+            this.loader = loader;
+            this.width = width;
+            this.height = height;
+            this.executor = executor;
+            buffers = new ByteBuffer[bufferCount];
+            bufferStates = new AtomicIntegerArray(bufferCount);
+            freeBuffers = new ArrayBlockingQueue<>(bufferCount);
+            for (int i = 0; i < bufferCount; i++) {
+                buffers[i] = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+                freeBuffers.add(buffers[i]);
+            }
+        }
+
+        /**
+         * Returns a free staging buffer to render the next frame into, waiting if all buffers are being uploaded.
+         * Time spent waiting is accounted in {@link #getStallTime()}.
+         * @return direct buffer in native byte order, with capacity for a frame in the
+         *         {@link #loadNativeRaster(VolatileImage, ByteBuffer, int, int, IntBuffer, int)} format
+         * @throws InterruptedException if interrupted while waiting
+         */
+        public ByteBuffer acquireBuffer() throws InterruptedException {
+            ByteBuffer buffer = freeBuffers.poll();
+            if (buffer == null) {
+                long start = System.nanoTime();
+                buffer = freeBuffers.take();
+                stallTime.addAndGet(System.nanoTime() - start);
+            }
+            bufferStates.set(indexOf(buffer), ACQUIRED);
+            // Buffer methods are called through Buffer, as they have covariant overrides only since Java 9.
+            ((Buffer) buffer).clear();
+            return buffer;
+        }
+
+        /**
+         * Submits a frame for uploading. The buffer is returned to the pipeline when uploading is done,
+         * and must not be used by the caller afterwards. Each acquired buffer can be submitted only once.
+         * @param buffer     buffer previously returned by {@link #acquireBuffer()}
+         * @param target     {@link VolatileImage}, or {@link BufferedImage#TYPE_INT_ARGB_PRE} {@link BufferedImage}
+         * @param rects      "dirty" rects, see {@link #loadNativeRaster(VolatileImage, long, int, int, IntBuffer, int)};
+         *                   must not be modified until uploading is done
+         * @param rectsCount count of "dirty" rects (if 0 then whole image used)
+         * @return future completed when the frame is uploaded, or completed exceptionally if uploading has failed,
+         *         the executor rejected the upload, or the buffer is not currently acquired (e.g. it was already
+         *         submitted)
+         * @throws IllegalArgumentException if the buffer doesn't belong to this pipeline, or the target is not supported
+         */
+        public CompletableFuture<Void> upload(ByteBuffer buffer, Image target, IntBuffer rects, int rectsCount) {
+            int index = indexOf(buffer);
+            if (index == -1) throw new IllegalArgumentException("Buffer doesn't belong to this pipeline");
+            if (target instanceof VolatileImage) {
+                if (loader == null) throw new IllegalArgumentException("No loader for volatile images");
+            } else if (!(target instanceof BufferedImage) ||
+                    ((BufferedImage) target).getType() != BufferedImage.TYPE_INT_ARGB_PRE) {
+                throw new IllegalArgumentException("Unsupported target image");
+            }
+            CompletableFuture<Void> fence = new CompletableFuture<>();
+            if (!bufferStates.compareAndSet(index, ACQUIRED, UPLOADING)) {
+                fence.completeExceptionally(new IllegalStateException("Buffer is not acquired"));
+                return fence;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        ByteBuffer raster = buffer.duplicate().order(ByteOrder.nativeOrder());
+                        ((Buffer) raster).position(0);
+                        if (target instanceof VolatileImage) {
+                            loader.loadNativeRaster((VolatileImage) target, raster, width, height, rects, rectsCount);
+                        } else {
+                            copy(raster.asIntBuffer(), (BufferedImage) target, rects, rectsCount);
+                        }
+                        release(index);
+                        fence.complete(null);
+                    } catch (Throwable t) {
+                        release(index);
+                        fence.completeExceptionally(t);
+                    }
+                });
+            } catch (Throwable t) {
+                // E.g. RejectedExecutionException after the executor has been shut down.
+                release(index);
+                fence.completeExceptionally(t);
+            }
+            return fence;
+        }
+
+        private void release(int index) {
+            if (bufferStates.compareAndSet(index, UPLOADING, FREE)) freeBuffers.add(buffers[index]);
+        }
+
+        private int indexOf(ByteBuffer buffer) {
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] == buffer) return i;
+            }
+            return -1;
+        }
+
+        private void copy(IntBuffer src, BufferedImage image, IntBuffer rects, int rectsCount) {
+            int[] dst = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            int w = Math.min(width, image.getWidth()), h = Math.min(height, image.getHeight());
+            if (rects == null || rectsCount == 0) {
+                copyRect(src, dst, image.getWidth(), 0, 0, w, h);
+                return;
+            }
+            for (int i = 0, base = rects.position(); i < rectsCount; i++, base += 4) {
+                int x = Math.max(0, rects.get(base)), y = Math.max(0, rects.get(base + 1));
+                copyRect(src, dst, image.getWidth(), x, y,
+                        Math.min(w, rects.get(base) + rects.get(base + 2)) - x,
+                        Math.min(h, rects.get(base + 1) + rects.get(base + 3)) - y);
+            }
+        }
+
+        private void copyRect(IntBuffer src, int[] dst, int dstStride, int x, int y, int w, int h) {
+            if (w <= 0) return;
+            for (int row = y; row < y + h; row++) {
+                ((Buffer) src).position(row * width + x);
+                src.get(dst, row * dstStride + x, w);
+            }
+        }
+
+        /**
+         * Get time spent waiting for staging buffers.
+         * @return total time in nanoseconds {@link #acquireBuffer()} spent waiting for a free buffer
+         */
+        public long getStallTime() {
+            return stallTime.get();
+        }
+
+        /**
+         * Get number of staging buffers.
+         * @return number of staging buffers
+         */
+        public int getBufferCount() {
+            return buffers.length;
+        }
+    }
+
+    /**
+     * Merges overlapping and nearby "dirty" rects before uploading, so that many small updates
+     * are done with fewer rects. Two rects are merged when the area of their bounding box not covered by
+     * either of them doesn't exceed the given fraction of the bounding box area.
+     * Rects have the same layout as in {@link #loadNativeRaster(VolatileImage, long, int, int, IntBuffer, int)}.
+     * <p>
+     * Instances keep cumulative statistics and are not thread-safe.
+     */
+    final class RectCoalescer {
+        private final float wasteThreshold;
+        private long rectsIn, rectsOut;
+
+        /**
+         * Creates a coalescer with the given waste threshold.
+         * @param wasteThreshold maximum fraction of a merged rect area, which may be not covered
+         *                       by the original rects, between 0 and 1. 0 merges only rects whose
+         *                       union is exactly a rect, 1 merges everything into a single bounding rect
+         * @throws IllegalArgumentException if the threshold is out of range
+         */
+        public RectCoalescer(float wasteThreshold) {
+            if (!(wasteThreshold >= 0 && wasteThreshold <= 1)) {
+                throw new IllegalArgumentException("Waste threshold must be between 0 and 1");
+            }
+            this.wasteThreshold = wasteThreshold;
+        }
+
+        /**
+         * Coalesces rects in place. Empty rects are removed.
+         * @param rects      array of rects
+         * @param rectsCount count of rects in the array
+         * @return count of rects after coalescing, they are stored at the beginning of the array
+         * @throws IllegalArgumentException if the array has less than {@code rectsCount} rects
+         */
+        public int coalesce(int[] rects, int rectsCount) {
+            return coalesce(IntBuffer.wrap(rects), rectsCount);
+        }
+
+        /**
+         * Coalesces rects in place. Empty rects are removed. Buffer's position is not changed.
+         * @param rects      buffer of rects, starting at its position
+         * @param rectsCount count of rects in the buffer
+         * @return count of rects after coalescing, they are stored at the beginning of the buffer
+         * @throws IllegalArgumentException if the buffer has less than {@code rectsCount} rects remaining
+         */
+        public int coalesce(IntBuffer rects, int rectsCount) {
+            if (rectsCount < 0 || rects.remaining() / 4 < rectsCount) {
+                throw new IllegalArgumentException("Not enough rects in the buffer");
+            }
+            int base = rects.position();
+            rectsIn += rectsCount;
+            int count = 0;
+            for (int i = 0; i < rectsCount; i++) {
+                int r = base + i * 4;
+                if (rects.get(r + 2) > 0 && rects.get(r + 3) > 0) copy(rects, r, base + count++ * 4);
+            }
+            boolean merged;
+            do {
+                merged = false;
+                for (int i = 0; i < count; i++) {
+                    for (int j = i + 1; j < count; j++) {
+                        if (tryMerge(rects, base + i * 4, base + j * 4)) {
+                            copy(rects, base + --count * 4, base + j-- * 4);
+                            merged = true;
+                        }
+                    }
+                }
+            } while (merged);
+            rectsOut += count;
+            return count;
+        }
+
+        private boolean tryMerge(IntBuffer rects, int a, int b) {
+            long ax = rects.get(a), ay = rects.get(a + 1), aw = rects.get(a + 2), ah = rects.get(a + 3);
+            long bx = rects.get(b), by = rects.get(b + 1), bw = rects.get(b + 2), bh = rects.get(b + 3);
+            long x1 = Math.min(ax, bx), y1 = Math.min(ay, by);
+            long x2 = Math.max(ax + aw, bx + bw), y2 = Math.max(ay + ah, by + bh);
+            long ix = Math.max(0, Math.min(ax + aw, bx + bw) - Math.max(ax, bx));
+            long iy = Math.max(0, Math.min(ay + ah, by + bh) - Math.max(ay, by));
+            long union = (x2 - x1) * (y2 - y1);
+            long covered = aw * ah + bw * bh - ix * iy;
+            if (union - covered > wasteThreshold * union) return false;
+            rects.put(a, (int) x1).put(a + 1, (int) y1).put(a + 2, (int) (x2 - x1)).put(a + 3, (int) (y2 - y1));
+            return true;
+        }
+
+        private static void copy(IntBuffer rects, int from, int to) {
+            if (from == to) return;
+            for (int i = 0; i < 4; i++) rects.put(to + i, rects.get(from + i));
+        }
+
+        /**
+         * Get number of rects passed to coalescing.
+         * @return total count of rects passed to {@link #coalesce}
+         */
+        public long getInputRectCount() {
+            return rectsIn;
+        }
+
+        /**
+         * Get number of rects produced by coalescing.
+         * @return total count of rects returned from {@link #coalesce}
+         */
+        public long getOutputRectCount() {
+            return rectsOut;
+        }
+    }
 }
\ No newline at end of file
@@ -16,8 +16,12 @@
 
 package com.jetbrains;
 
+import java.awt.Rectangle;
 import java.awt.Window;
 import java.awt.image.BufferedImage;
+import java.nio.IntBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Provides a way to take screenshots of an individual {@link java.awt.Window} without involving the operating
@@ -87,4 +91,287 @@ public interface Screenshoter {
      *         The returned image is a copy, so the caller can modify it.
      */
     BufferedImage getWindowSurfaceArea(Window window, int x, int y, int width, int height);
+
+    /**
+     * <p>Same as {@link #getWindowBackbufferArea(Window, int, int, int, int)}, but writes pixels into the
+     * given buffer instead of allocating a new image, so the buffer can be reused between captures.</p>
+     *
+     * <p>Pixels are written starting at the buffer's current position, row by row, {@code scanlineStride}
+     * elements apart. Buffer's position and limit are not changed. A direct {@link java.nio.ByteBuffer} can be
+     * used through its {@link java.nio.ByteBuffer#asIntBuffer() int view}.</p>
+     *
+     * <p>In addition to the cases listed for {@link #getWindowBackbufferArea(Window, int, int, int, int)},
+     * {@link java.lang.IllegalArgumentException} is thrown if {@code imageType} is not supported, or if the buffer
+     * has not enough remaining space for the requested area.</p>
+     *
+     * @param window         window to take a screenshot of; must not be {@code null}
+     * @param area           area within the window's client area; on successful return,
+     *                       updated to the area actually captured after clipping
+     * @param pixels         destination buffer
+     * @param scanlineStride distance between the starts of consecutive rows in the buffer, in pixels
+     * @param imageType      pixel format, one of {@link BufferedImage#TYPE_INT_RGB}, {@link BufferedImage#TYPE_INT_ARGB},
+     *                       {@link BufferedImage#TYPE_INT_ARGB_PRE} or {@link BufferedImage#TYPE_INT_BGR}
+     * @return {@code true} if the pixels were written, {@code false} if the window has no backbuffer
+     *         or is not visible
+     */
+    @Extension(Extensions.SCREENSHOTER_BUFFER_CAPTURE)
+    boolean getWindowBackbufferArea(Window window, Rectangle area, IntBuffer pixels, int scanlineStride, int imageType);
+
+    /**
+     * Same as {@link #getWindowBackbufferArea(Window, Rectangle, IntBuffer, int, int)}, writing into an array.
+     * @param window         window to take a screenshot of; must not be {@code null}
+     * @param area           area within the window's client area; updated to the area actually captured
+     * @param pixels         destination array
+     * @param offset         index of the first pixel in the array
+     * @param scanlineStride distance between the starts of consecutive rows in the array, in pixels
+     * @param imageType      pixel format
+     * @return {@code true} if the pixels were written, {@code false} if the window has no backbuffer
+     *         or is not visible
+     */
+    default boolean getWindowBackbufferArea(Window window, Rectangle area, int[] pixels, int offset,
+                                            int scanlineStride, int imageType) {
+        return getWindowBackbufferArea(window, area, IntBuffer.wrap(pixels, offset, pixels.length - offset).slice(),
+                scanlineStride, imageType);
+    }
+
+    /**
+     * <p>Same as {@link #getWindowSurfaceArea(Window, int, int, int, int)}, but writes pixels into the
+     * given buffer instead of allocating a new image, so the buffer can be reused between captures.
+     * Buffer layout and exceptions follow
+     * {@link #getWindowBackbufferArea(Window, Rectangle, IntBuffer, int, int)}.</p>
+     *
+     * <p>Since the actual pixels of the window may be scaled, {@code area} is updated to the size
+     * of the captured pixel data, which may differ from the requested size.</p>
+     *
+     * @param window         window to take a screenshot of; must not be {@code null}
+     * @param area           area within the window's client area; on successful return,
+     *                       updated to the area actually captured, in pixels of the underlying surface
+     * @param pixels         destination buffer
+     * @param scanlineStride distance between the starts of consecutive rows in the buffer, in pixels
+     * @param imageType      pixel format, one of {@link BufferedImage#TYPE_INT_RGB}, {@link BufferedImage#TYPE_INT_ARGB},
+     *                       {@link BufferedImage#TYPE_INT_ARGB_PRE} or {@link BufferedImage#TYPE_INT_BGR}
+     * @return {@code true} if the pixels were written, {@code false} if the window is not visible
+     */
+    @Extension(Extensions.SCREENSHOTER_BUFFER_CAPTURE)
+    boolean getWindowSurfaceArea(Window window, Rectangle area, IntBuffer pixels, int scanlineStride, int imageType);
+
+    /**
+     * Same as {@link #getWindowSurfaceArea(Window, Rectangle, IntBuffer, int, int)}, writing into an array.
+     * @param window         window to take a screenshot of; must not be {@code null}
+     * @param area           area within the window's client area; updated to the area actually captured
+     * @param pixels         destination array
+     * @param offset         index of the first pixel in the array
+     * @param scanlineStride distance between the starts of consecutive rows in the array, in pixels
+     * @param imageType      pixel format
+     * @return {@code true} if the pixels were written, {@code false} if the window is not visible
+     */
+    default boolean getWindowSurfaceArea(Window window, Rectangle area, int[] pixels, int offset,
+                                         int scanlineStride, int imageType) {
+        return getWindowSurfaceArea(window, area, IntBuffer.wrap(pixels, offset, pixels.length - offset).slice(),
+                scanlineStride, imageType);
+    }
+
+    /**
+     * <p>Same as {@link #getWindowBackbufferArea(Window, int, int, int, int)}, but scales the captured area to the
+     * given size while copying pixels, so memory traffic and allocation are proportional to the output size.
+     * Downscaling averages source pixels covered by each output pixel. Aspect ratio is not preserved.</p>
+     *
+     * <p>In addition to the cases listed for the unscaled version, {@link java.lang.IllegalArgumentException}
+     * is thrown if {@code targetWidth} or {@code targetHeight} is negative or zero.</p>
+     *
+     * @param window       window to take a screenshot of; must not be {@code null}
+     * @param x            x coordinate within the window's client area
+     * @param y            y coordinate within the window's client area
+     * @param width        width of the screenshot; clipped to the window's client area
+     * @param height       height of the screenshot; clipped to the window's client area
+     * @param targetWidth  width of the returned image
+     * @param targetHeight height of the returned image
+     * @return scaled snapshot of the window's client area, or {@code null} in the same cases as the unscaled version
+     */
+    @Extension(Extensions.SCREENSHOTER_SCALED_CAPTURE)
+    BufferedImage getWindowBackbufferArea(Window window, int x, int y, int width, int height,
+                                          int targetWidth, int targetHeight);
+
+    /**
+     * <p>Same as {@link #getWindowSurfaceArea(Window, int, int, int, int)}, but scales the captured pixels to the
+     * given size while copying them. This avoids copying HiDPI surfaces at full device resolution when a smaller
+     * image is needed. Downscaling averages source pixels covered by each output pixel.
+     * Aspect ratio is not preserved.</p>
+     *
+     * <p>In addition to the cases listed for the unscaled version, {@link java.lang.IllegalArgumentException}
+     * is thrown if {@code targetWidth} or {@code targetHeight} is negative or zero.</p>
+     *
+     * @param window       window to take a screenshot of; must not be {@code null}
+     * @param x            x coordinate within the window's client area
+     * @param y            y coordinate within the window's client area
+     * @param width        width of the area to screenshot; clipped to the window's client area
+     * @param height       height of the area to screenshot; clipped to the window's client area
+     * @param targetWidth  width of the returned image
+     * @param targetHeight height of the returned image
+     * @return scaled snapshot of the window's client area, or {@code null} if the window is not visible
+     */
+    @Extension(Extensions.SCREENSHOTER_SCALED_CAPTURE)
+    BufferedImage getWindowSurfaceArea(Window window, int x, int y, int width, int height,
+                                       int targetWidth, int targetHeight);
+
+    /**
+     * <p>Asynchronous version of {@link #getWindowBackbufferArea(Window, int, int, int, int)}. Only a quick snapshot
+     * of the backbuffer is taken in the calling thread, while conversion and copying of pixels into the resulting
+     * image is done by the given executor. This keeps pauses short when capturing from the event dispatch thread.</p>
+     *
+     * <p>Arguments are validated immediately, with the same exceptions as the synchronous version.</p>
+     *
+     * @param window   window to take a screenshot of; must not be {@code null}
+     * @param x        x coordinate within the window's client area
+     * @param y        y coordinate within the window's client area
+     * @param width    width of the screenshot; clipped to the window's client area
+     * @param height   height of the screenshot; clipped to the window's client area
+     * @param executor executor used for copying pixels; must not be {@code null}
+     * @return future completed with the same result as the synchronous version would return
+     */
+    @Extension(Extensions.SCREENSHOTER_ASYNC_CAPTURE)
+    CompletableFuture<BufferedImage> getWindowBackbufferAreaAsync(Window window, int x, int y, int width, int height,
+                                                                  Executor executor);
+
+    /**
+     * <p>Asynchronous version of {@link #getWindowSurfaceArea(Window, int, int, int, int)}. Only a quick snapshot
+     * of the surface is taken in the calling thread, while conversion and copying of pixels into the resulting
+     * image is done by the given executor.</p>
+     *
+     * <p>Arguments are validated immediately, with the same exceptions as the synchronous version.</p>
+     *
+     * @param window   window to take a screenshot of; must not be {@code null}
+     * @param x        x coordinate within the window's client area
+     * @param y        y coordinate within the window's client area
+     * @param width    width of the area to screenshot; clipped to the window's client area
+     * @param height   height of the area to screenshot; clipped to the window's client area
+     * @param executor executor used for copying pixels; must not be {@code null}
+     * @return future completed with the same result as the synchronous version would return
+     */
+    @Extension(Extensions.SCREENSHOTER_ASYNC_CAPTURE)
+    CompletableFuture<BufferedImage> getWindowSurfaceAreaAsync(Window window, int x, int y, int width, int height,
+                                                               Executor executor);
+
+    /**
+     * <p>Starts capturing the window's backbuffer at a fixed rate into a bounded ring of reusable buffers, see
+     * {@link #getWindowBackbufferArea(Window, int, int, int, int)}. Captured frames are retrieved with
+     * {@link FrameStream#poll()} and must be {@linkplain Frame#release() released} to make their buffers available
+     * again. When no buffer is free, the frame is dropped instead of queued.</p>
+     *
+     * <p>Frames are not captured while the window has no backbuffer or is not visible.</p>
+     *
+     * @param window          window to capture; must not be {@code null}
+     * @param x               x coordinate within the window's client area
+     * @param y               y coordinate within the window's client area
+     * @param width           width of the captured area; clipped to the window's client area
+     * @param height          height of the captured area; clipped to the window's client area
+     * @param framesPerSecond capture rate, must be positive
+     * @param bufferCount     number of frame buffers in the ring, must be positive
+     * @return started frame stream
+     * @throws IllegalArgumentException in the same cases as the single-frame capture,
+     *                                  or if {@code framesPerSecond} or {@code bufferCount} is not positive
+     */
+    @Extension(Extensions.SCREENSHOTER_FRAME_STREAM)
+    FrameStream startFrameStream(Window window, int x, int y, int width, int height,
+                                 int framesPerSecond, int bufferCount);
+
+    /**
+     * Continuous capture of a window into a ring of buffers.
+     * @see #startFrameStream(Window, int, int, int, int, int, int)
+     */
+    @Provided
+    interface FrameStream {
+        /**
+         * Get the next captured frame.
+         * @return the oldest captured frame not yet retrieved, or {@code null} if there is none
+         */
+        Frame poll();
+
+        /**
+         * Get number of dropped frames.
+         * @return number of frames dropped so far because all buffers were in use
+         */
+        long getDroppedFrameCount();
+
+        /**
+         * Stops capturing. Frames already retrieved stay valid until released.
+         */
+        void close();
+    }
+
+    /**
+     * Single frame of a {@link FrameStream}. Pixels are in the {@link BufferedImage#TYPE_INT_ARGB} format.
+     */
+    @Provided
+    interface Frame {
+        /**
+         * Get frame pixels.
+         * @return buffer with pixels of the frame, starting at its position; valid until {@link #release()}
+         */
+        IntBuffer getPixels();
+
+        /**
+         * Get captured area.
+         * @return captured area in the window's client area coordinates, may change between frames
+         */
+        Rectangle getArea();
+
+        /**
+         * Get scanline stride of the frame buffer.
+         * @return distance between the starts of consecutive rows in the buffer, in pixels
+         */
+        int getScanlineStride();
+
+        /**
+         * Get frame capture time.
+         * @return capture time, comparable with {@link System#nanoTime()}
+         */
+        long getTimestamp();
+
+        /**
+         * Returns the buffer to the ring, the frame must not be used afterwards.
+         */
+        void release();
+    }
+
+    /**
+     * Creates a session for incremental capturing of the window's backbuffer, reporting only regions
+     * changed since the previous capture. If the toolkit cannot report repainted regions, they are found
+     * by comparing consecutive captures.
+     * @param window window to capture; must not be {@code null}
+     * @return new capture session
+     */
+    @Extension(Extensions.SCREENSHOTER_CAPTURE_SESSION)
+    CaptureSession createCaptureSession(Window window);
+
+    /**
+     * Incremental capture of a single window.
+     * @see #createCaptureSession(Window)
+     */
+    @Provided
+    interface CaptureSession {
+        /**
+         * Captures the window's client area, see {@link #getWindowBackbufferArea(Window, int, int, int, int)}.
+         * Returned regions may be larger than the actually changed pixels, but never miss any change.
+         * @return regions changed since the previous capture, in the window's client area coordinates;
+         *         the whole client area on the first capture, or when its size has changed;
+         *         {@code null} if the window has no backbuffer or is not visible
+         */
+        Rectangle[] capture();
+
+        /**
+         * Copies pixels of the last capture in the {@link BufferedImage#TYPE_INT_ARGB} format.
+         * Buffer's position and limit are not changed.
+         * @param region         region to copy, usually one returned by {@link #capture()}
+         * @param pixels         destination buffer, filled starting at its current position
+         * @param scanlineStride distance between the starts of consecutive rows in the buffer, in pixels
+         * @throws IllegalArgumentException if the region is outside the last capture
+         */
+        void getPixels(Rectangle region, IntBuffer pixels, int scanlineStride);
+
+        /**
+         * Releases resources held by the session. The session must not be used afterwards.
+         */
+        void close();
+    }
 }
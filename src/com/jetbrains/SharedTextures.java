@@ -17,6 +17,13 @@
 package com.jetbrains;
 
 import java.awt.*;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
  * The service provides functionality for working with shared textures in JetBrainsRuntime.
@@ -29,6 +36,13 @@ public interface SharedTextures {
      */
     public final static int METAL_TEXTURE_TYPE = 1;
 
+    /**
+     * Only software textures backed by host memory are supported,
+     * see {@link #wrapTexture(GraphicsConfiguration, ByteBuffer, int, int, int)}.
+     * Returned by {@link #getTextureType()} when the current rendering pipeline cannot share GPU textures.
+     */
+    public final static int SOFTWARE_TEXTURE_TYPE = 2;
+
     /**
      * Returns the texture type supported by the current rendering pipeling.
      *
@@ -69,4 +83,194 @@ public interface SharedTextures {
      * @throws IllegalArgumentException      if the texture cannot be wrapped. The details are logged in {@code J2D_TRACE_ERROR}.
      */
     Image wrapTexture(GraphicsConfiguration gc, long texture);
+
+    /**
+     * Wraps pixels in host memory into an image, without copying. The image is backed by a surface of the
+     * rendering pipeline of the given {@link GraphicsConfiguration}, which reads the pixels from the buffer
+     * when the image is drawn. Unlike {@link #wrapTexture(GraphicsConfiguration, long)}, this works with
+     * every rendering pipeline, which allows using the same code path when GPU textures cannot be shared.
+     *
+     * <p><b>Notes:</b></p>
+     * <ul>
+     *     <li>The resulting image cannot be used as a drawing destination.</li>
+     *     <li>The resulting image is compatible with the provided {@link GraphicsConfiguration}.
+     *         It is the responsibility of client code to track graphics configuration changes and recreate the wrapping
+     *         image.</li>
+     *     <li>Changes of the pixels are visible through the image, client code is responsible for ensuring
+     *         they are not modified while the image is being drawn.</li>
+     *     <li>The buffer is referenced by the wrapping image and must not be freed during its lifetime.</li>
+     * </ul>
+     *
+     * @param gc             the target {@link GraphicsConfiguration}.
+     * @param pixels         direct buffer with pixels starting at its position, 8-bit ARGB color components
+     *                       premultiplied with alpha, packed into integer pixels in native byte order
+     * @param width          width of the texture in pixels
+     * @param height         height of the texture in pixels
+     * @param scanlineStride distance between the starts of consecutive rows in the buffer, in pixels
+     * @return a wrapping image compatible with the specified {@code GraphicsConfiguration}.
+     * @throws IllegalArgumentException if the buffer is not direct or too small, or the size is not positive
+     */
+    @Extension(Extensions.SOFTWARE_TEXTURES)
+    Image wrapTexture(GraphicsConfiguration gc, ByteBuffer pixels, int width, int height, int scanlineStride);
+
+    /**
+     * Bounded cache of {@linkplain #wrapTexture(GraphicsConfiguration, long) wrapping images}, evicting least
+     * recently used entries. Images are cached per texture and {@link GraphicsConfiguration}, so a texture
+     * shown on several screens has a cached image for each of them. Images dropped from the pool are
+     * {@linkplain Image#flush() flushed}.
+     * <p>
+     * Configuration changes are not tracked: an image wrapped for a configuration which is no longer used,
+     * e.g. after the window has moved to another screen, stays in the pool until it's evicted, and keeps its
+     * texture retained on Metal. {@linkplain #remove(long) Remove} the texture when its configuration changes
+     * to release such images early.
+     * <p>
+     * The pool doesn't control texture lifetime. {@linkplain #remove(long) Remove} the texture from the pool
+     * before releasing it, so that it's not returned for a new texture allocated at the same address.
+     */
+    final class TexturePool {
+        private final SharedTextures sharedTextures;
+        private final int capacity;
+        private final Map<Key, Image> entries = new LinkedHashMap<>(16, 0.75f, true);
+        private long hits, misses, evictions;
+
+        /**
+         * Creates an empty pool with the given capacity.
+         * @param sharedTextures service used for wrapping textures
+         * @param capacity       maximum number of cached images
+         * @throws IllegalArgumentException if capacity is not positive
+         */
+        public TexturePool(SharedTextures sharedTextures, int capacity) {
+            if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+            this.sharedTextures = sharedTextures;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Returns a cached wrapping image, or wraps the texture if there is none for the given configuration.
+         * Wrapping is done without holding the pool lock, so concurrent calls for the same texture may wrap it
+         * more than once. In that case the image cached first is returned by all of them, and the other
+         * images are flushed, so an image returned by the pool is never flushed because of such a race.
+         * @param gc      the target {@link GraphicsConfiguration}.
+         * @param texture the texture to be wrapped, see {@link #wrapTexture(GraphicsConfiguration, long)}
+         * @return a wrapping image compatible with the specified {@code GraphicsConfiguration}.
+         * @throws UnsupportedOperationException if the current pipeline is not supported.
+         * @throws IllegalArgumentException      if the texture cannot be wrapped.
+         */
+        public Image get(GraphicsConfiguration gc, long texture) {
+            Key key = new Key(texture, gc);
+            synchronized (entries) {
+                Image image = entries.get(key);
+                if (image != null) {
+                    hits++;
+                    return image;
+                }
+                misses++;
+            }
+            Image image = sharedTextures.wrapTexture(gc, texture);
+            List<Image> dropped = new ArrayList<>();
+            synchronized (entries) {
+                Image cached = entries.get(key);
+                if (cached != null) {
+                    // Another thread has wrapped the texture meanwhile, and may already use its image.
+                    dropped.add(image);
+                    image = cached;
+                } else {
+                    entries.put(key, image);
+                    for (Iterator<Image> it = entries.values().iterator(); entries.size() > capacity; evictions++) {
+                        dropped.add(it.next());
+                        it.remove();
+                    }
+                }
+            }
+            flush(dropped);
+            return image;
+        }
+
+        /**
+         * Drops the cached images for the texture for all graphics configurations, if any.
+         * @param texture the texture
+         */
+        public void remove(long texture) {
+            List<Image> dropped = new ArrayList<>();
+            synchronized (entries) {
+                for (Iterator<Map.Entry<Key, Image>> it = entries.entrySet().iterator(); it.hasNext();) {
+                    Map.Entry<Key, Image> entry = it.next();
+                    if (entry.getKey().texture == texture) {
+                        dropped.add(entry.getValue());
+                        it.remove();
+                    }
+                }
+            }
+            flush(dropped);
+        }
+
+        /**
+         * Drops all cached images.
+         */
+        public void clear() {
+            List<Image> dropped;
+            synchronized (entries) {
+                dropped = new ArrayList<>(entries.values());
+                entries.clear();
+            }
+            flush(dropped);
+        }
+
+        private static void flush(List<Image> images) {
+            for (Image image : images) image.flush();
+        }
+
+        /**
+         * Get number of cache hits.
+         * @return number of {@link #get} calls answered from the cache
+         */
+        public long getHitCount() {
+            synchronized (entries) {
+                return hits;
+            }
+        }
+
+        /**
+         * Get number of cache misses.
+         * @return number of {@link #get} calls which required wrapping the texture
+         */
+        public long getMissCount() {
+            synchronized (entries) {
+                return misses;
+            }
+        }
+
+        /**
+         * Get number of evicted images.
+         * @return number of images dropped because the pool was full
+         */
+        public long getEvictionCount() {
+            synchronized (entries) {
+                return evictions;
+            }
+        }
+
+        private static final class Key {
+            private final long texture;
+            private final GraphicsConfiguration gc;
+
+            private Key(long texture, GraphicsConfiguration gc) {
+                this.texture = texture;
+                this.gc = gc;
+            }
+
+            @Override
+            public boolean equals(Object o) {
+                if (this == o) return true;
+                if (!(o instanceof Key)) return false;
+                Key key = (Key) o;
+                return texture == key.texture && Objects.equals(gc, key.gc);
+            }
+
+            @Override
+            public int hashCode() {
+                return Long.hashCode(texture) * 31 + Objects.hashCode(gc);
+            }
+        }
+    }
 }
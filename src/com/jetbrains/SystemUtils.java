@@ -16,6 +16,8 @@
 
 package com.jetbrains;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Extends services provided by java.lang.System and similar.
  */
@@ -42,4 +44,185 @@ public interface SystemUtils {
      */
     @Extension(Extensions.SHRINKING_GC)
     void shrinkingGC();
+
+    /**
+     * Same as {@link #shrinkingGC()}, but uses the given maximum heap free ratio for this invocation
+     * instead of the -XX:JbrShrinkingGcMaxHeapFreeRatio option, allowing to shrink harder
+     * e.g. when the application is in the background.
+     *
+     * Implemented for G1 only; equivalent to System.gc() for other garbage collectors.
+     *
+     * @param maxHeapFreeRatio maximum percentage of free heap after GC, between 0 and 100
+     * @return committed heap size after GC, in bytes
+     * @throws IllegalArgumentException if {@code maxHeapFreeRatio} is out of range
+     */
+    @Extension(Extensions.SHRINKING_GC_TARGET)
+    long shrinkingGC(int maxHeapFreeRatio);
+
+    /**
+     * Same as {@link #shrinkingGC()}, but tries to reduce the heap's committed size to the given value.
+     * Committed size never goes below the used heap size or the minimum (-Xms) heap size limit,
+     * so the target is not guaranteed to be reached.
+     *
+     * Implemented for G1 only; equivalent to System.gc() for other garbage collectors.
+     *
+     * @param targetCommittedSize desired committed heap size, in bytes
+     * @return committed heap size after GC, in bytes
+     * @throws IllegalArgumentException if {@code targetCommittedSize} is negative
+     */
+    @Extension(Extensions.SHRINKING_GC_TARGET)
+    long shrinkingGCToSize(long targetCommittedSize);
+
+    /**
+     * Clears soft references without performing a full garbage collection, starting from the ones whose
+     * referents were least recently accessed, until either of the budgets is exhausted. This allows trimming
+     * caches gradually instead of losing all of them at once with {@link #fullGC()}.
+     *
+     * Referents are accounted by their shallow size. Cleared references are enqueued as usual, and the memory
+     * is reclaimed by subsequent garbage collections.
+     *
+     * @param maxBytes maximum total size of referents to clear, in bytes
+     * @param maxCount maximum number of references to clear
+     * @return eviction statistics
+     * @throws IllegalArgumentException if either of the budgets is negative
+     */
+    @Extension(Extensions.SOFT_REFERENCE_EVICTION)
+    EvictionResult clearSoftReferences(long maxBytes, int maxCount);
+
+    /**
+     * Statistics of a {@linkplain #clearSoftReferences(long, int) soft reference eviction}.
+     */
+    @Provided
+    interface EvictionResult {
+        /**
+         * Get number of cleared references.
+         * @return number of cleared soft references
+         */
+        int getClearedCount();
+
+        /**
+         * Get size of cleared referents.
+         * @return total shallow size of referents of the cleared references, in bytes
+         */
+        long getClearedBytes();
+
+        /**
+         * Get number of remaining references.
+         * @return number of soft references with live referents remaining after the eviction
+         */
+        int getRemainingCount();
+    }
+
+    /**
+     * Schedules garbage collection without blocking the calling thread. The collection is performed
+     * as {@link #fullGC()}, or as {@link #shrinkingGC()} if {@code shrinking} is true.
+     *
+     * If {@code idleMillis} is positive, the collection is deferred until the application has been idle for
+     * the given duration, meaning that no input events were dispatched and the event queue was empty.
+     *
+     * @param shrinking  whether to make an additional effort to reduce the heap's committed size
+     * @param idleMillis required idle time in milliseconds before collecting, 0 to collect immediately
+     * @param callback   callback invoked with the results after the collection, or with {@code null} if it failed,
+     *                   on an unspecified thread
+     * @throws IllegalArgumentException if {@code idleMillis} is negative
+     */
+    @Extension(Extensions.ASYNC_GC)
+    void scheduleGC(boolean shrinking, long idleMillis, GCCallback callback);
+
+    /**
+     * Asynchronous version of {@link #fullGC()}, see {@link #gcAsync(boolean, long)}.
+     * @param idleMillis required idle time in milliseconds before collecting, 0 to collect immediately
+     * @return future completed with the results after the collection, or completed exceptionally
+     *         if the collection could not be scheduled or has failed
+     */
+    default CompletableFuture<GCResult> fullGCAsync(long idleMillis) {
+        return gcAsync(false, idleMillis);
+    }
+
+    /**
+     * Asynchronous version of {@link #shrinkingGC()}, see {@link #gcAsync(boolean, long)}.
+     * @param idleMillis required idle time in milliseconds before collecting, 0 to collect immediately
+     * @return future completed with the results after the collection, or completed exceptionally
+     *         if the collection could not be scheduled or has failed
+     */
+    default CompletableFuture<GCResult> shrinkingGCAsync(long idleMillis) {
+        return gcAsync(true, idleMillis);
+    }
+
+    /**
+     * Future based version of {@link #scheduleGC(boolean, long, GCCallback)}. The future is completed exceptionally
+     * if {@code scheduleGC} throws, e.g. when the {@link Extensions#ASYNC_GC} extension is not enabled,
+     * or if the collection has failed.
+     * @param shrinking  whether to make an additional effort to reduce the heap's committed size
+     * @param idleMillis required idle time in milliseconds before collecting, 0 to collect immediately
+     * @return future completed with the results after the collection, or completed exceptionally
+     *         if the collection could not be scheduled or has failed
+     */
+    default CompletableFuture<GCResult> gcAsync(boolean shrinking, long idleMillis) {
+        CompletableFuture<GCResult> future = new CompletableFuture<>();
+        try {
+            scheduleGC(shrinking, idleMillis, result -> {
+                if (result != null) future.complete(result);
+                else future.completeExceptionally(new IllegalStateException("Garbage collection failed"));
+            });
+        } catch (Throwable t) {
+            future.completeExceptionally(t);
+        }
+        return future;
+    }
+
+    /**
+     * Garbage collection completion callback.
+     * @see #scheduleGC(boolean, long, GCCallback)
+     */
+    @Provides
+    interface GCCallback {
+        /**
+         * Called after the collection.
+         * @param result results of the collection, or {@code null} if it failed
+         */
+        void gcCompleted(GCResult result);
+    }
+
+    /**
+     * Results of a garbage collection.
+     */
+    @Provided
+    interface GCResult {
+        /**
+         * Get pause time of the collection.
+         * @return total time the application was paused, in nanoseconds
+         */
+        long getPauseTime();
+
+        /**
+         * Get amount of reclaimed memory.
+         * @return amount of heap memory reclaimed, in bytes
+         */
+        long getReclaimedBytes();
+
+        /**
+         * Get number of cleared soft references.
+         * @return number of soft references cleared by the collection
+         */
+        long getClearedSoftReferences();
+
+        /**
+         * Get number of cleared weak references.
+         * @return number of weak references cleared by the collection
+         */
+        long getClearedWeakReferences();
+
+        /**
+         * Get committed heap size before the collection.
+         * @return committed heap size before the collection, in bytes
+         */
+        long getCommittedBefore();
+
+        /**
+         * Get committed heap size after the collection.
+         * @return committed heap size after the collection, in bytes
+         */
+        long getCommittedAfter();
+    }
 }
@@ -16,6 +16,8 @@
 
 package com.jetbrains;
 
+import java.awt.image.BufferedImage;
+
 /**
  * Access to the Vulkan rendering backend, if available.
  */
@@ -36,6 +38,126 @@ public interface Vulkan {
      */
     Device[] getDevices();
 
+    /**
+     * Get the current state of the Vulkan backend. The same snapshot is returned until the state changes,
+     * so this method is cheap to call repeatedly.
+     * @return immutable snapshot of devices and presentation state
+     * @see #addStateListener(StateListener)
+     */
+    @Extension(Extensions.VULKAN_STATE_TRACKING)
+    Snapshot getSnapshot();
+
+    /**
+     * Adds a listener notified when the device list or {@linkplain #isPresentationEnabled() presentation
+     * availability} changes. Listeners are called on an unspecified thread.
+     * @param listener listener to add
+     */
+    @Extension(Extensions.VULKAN_STATE_TRACKING)
+    void addStateListener(StateListener listener);
+
+    /**
+     * Removes a listener previously added with {@link #addStateListener(StateListener)}.
+     * @param listener listener to remove
+     */
+    @Extension(Extensions.VULKAN_STATE_TRACKING)
+    void removeStateListener(StateListener listener);
+
+    /**
+     * Immutable state of the Vulkan backend.
+     * @see #getSnapshot()
+     */
+    @Provided
+    interface Snapshot {
+        /**
+         * Check whether Vulkan presentation was enabled.
+         * @return value of {@link #isPresentationEnabled()} at the time of the snapshot
+         */
+        boolean isPresentationEnabled();
+
+        /**
+         * Get devices available at the time of the snapshot.
+         * @return devices available at the time of the snapshot
+         */
+        Device[] getDevices();
+
+        /**
+         * Get devices having the required capabilities.
+         * @param capabilities required capabilities, see {@code CAP_*} constants in {@link Device}
+         * @return devices having all of the required capabilities
+         */
+        Device[] getDevices(int capabilities);
+
+        /**
+         * Get capabilities of all devices.
+         * @return union of capabilities of all devices
+         */
+        int getCapabilities();
+    }
+
+    /**
+     * Vulkan state change listener.
+     * @see #addStateListener(StateListener)
+     */
+    @Provides
+    interface StateListener {
+        /**
+         * Called when the device list or presentation availability changes.
+         * @param snapshot new state
+         */
+        void stateChanged(Snapshot snapshot);
+    }
+
+    /**
+     * Sets the selector used to choose the device when the Vulkan rendering pipeline initializes.
+     * All {@linkplain #getDevices() available devices}, including {@code CPU} ones, are ranked by the selector,
+     * and the device with the highest rank is used. Devices with negative rank are excluded from the choice.
+     * If all devices are excluded, the selector is ignored and the device is chosen as if no selector was set,
+     * so any device can be used then. Has no effect once the pipeline is initialized.
+     * @param selector device selector, or {@code null} to restore the default choice
+     * @return {@code true} if the selector will be used, {@code false} if the pipeline is already initialized
+     */
+    @Extension(Extensions.VULKAN_DEVICE_SELECTION)
+    boolean setDeviceSelector(DeviceSelector selector);
+
+    /**
+     * Get the device used by the rendering pipeline.
+     * @return device in use, or {@code null} if the pipeline is not initialized yet
+     */
+    @Extension(Extensions.VULKAN_DEVICE_SELECTION)
+    Device getActiveDevice();
+
+    /**
+     * Device ranking function.
+     * @see #setDeviceSelector(DeviceSelector)
+     */
+    @Provides
+    interface DeviceSelector {
+        /**
+         * Get rank of the device.
+         * @param device device to rank
+         * @return rank of the device, higher is better, negative excludes the device
+         */
+        int rank(Device device);
+
+        /**
+         * Creates a selector preferring devices of the given type, then devices with the given name.
+         * Devices lacking any of the required capabilities are excluded.
+         * @param typeString   preferred device type, see {@link Device#getTypeString()}, or {@code null}
+         * @param name         preferred device name, or {@code null}
+         * @param capabilities required capabilities, see {@code CAP_*} constants in {@link Device}
+         * @return device selector
+         */
+        static DeviceSelector preferring(String typeString, String name, int capabilities) {
+            return device -> {
+                if ((device.getCapabilities() & capabilities) != capabilities) return -1;
+                int rank = 0;
+                if (typeString != null && typeString.equals(device.getTypeString())) rank += 2;
+                if (name != null && name.equals(device.getName())) rank += 1;
+                return rank;
+            };
+        }
+    }
+
     /**
      * A Vulkan device (GPU).
      */
@@ -67,6 +189,20 @@ public interface Vulkan {
          */
         int CAP_SAMPLED_555_BIT   = 4;
 
+        /**
+         * Images of this format cannot be sampled by the device: {@link BufferedImage#TYPE_CUSTOM} and other
+         * types unknown to the pipeline, or images with a color model the device cannot sample.
+         */
+        int UPLOAD_UNSUPPORTED = 0;
+        /**
+         * Images of this format are uploaded to the device as is.
+         */
+        int UPLOAD_DIRECT      = 1;
+        /**
+         * Images of this format are converted on the CPU on every upload to the device.
+         */
+        int UPLOAD_CONVERTED   = 2;
+
         /**
          * Get device name.
          * @return device name
@@ -84,5 +220,25 @@ public interface Vulkan {
          * @return device capabilities
          */
         int getCapabilities();
+
+        /**
+         * Tells how images of the given type are uploaded to this device, allowing to keep images
+         * in a format which doesn't need conversion on every upload.
+         * @param imageType {@link BufferedImage} type, like {@link BufferedImage#TYPE_INT_ARGB_PRE}
+         * @return one of {@link #UPLOAD_DIRECT}, {@link #UPLOAD_CONVERTED} or {@link #UPLOAD_UNSUPPORTED},
+         *         the latter for {@link BufferedImage#TYPE_CUSTOM} and unknown types
+         */
+        @Extension(Extensions.VULKAN_UPLOAD_PATH)
+        int getUploadPath(int imageType);
+
+        /**
+         * Tells how the given image is uploaded to this device. Unlike {@link #getUploadPath(int)}, this
+         * takes the color model of the image into account.
+         * @param image image
+         * @return one of {@link #UPLOAD_DIRECT}, {@link #UPLOAD_CONVERTED} or {@link #UPLOAD_UNSUPPORTED},
+         *         the latter if the image type is unknown or its color model cannot be sampled by the device
+         */
+        @Extension(Extensions.VULKAN_UPLOAD_PATH)
+        int getUploadPath(BufferedImage image);
     }
 }
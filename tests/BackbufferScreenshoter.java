@@ -22,7 +22,9 @@
  * @run main/othervm -Dswing.bufferPerWindow=false BackbufferScreenshoter
  */
 
+import com.jetbrains.Extensions;
 import com.jetbrains.JBR;
+import com.jetbrains.Screenshoter;
 
 import javax.imageio.ImageIO;
 import javax.swing.SwingUtilities;
@@ -31,6 +33,11 @@ import java.awt.image.BufferedImage;
 import java.awt.Robot;
 import java.io.File;
 import java.awt.Color;
+import java.awt.Rectangle;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 public class BackbufferScreenshoter {
     static JFrame frame;
@@ -192,6 +199,22 @@ public class BackbufferScreenshoter {
                 throw new RuntimeException("getWindowBackbufferArea() returned an image with a wrong color: " + Integer.toHexString(centerPixel)
                         + ", expected: " + Integer.toHexString(Color.GREEN.getRGB()));
             }
+
+            if (JBR.isExtensionSupported(Extensions.SCREENSHOTER_BUFFER_CAPTURE)) {
+                testBufferCapture(clientBounds.width, clientBounds.height);
+            }
+            if (JBR.isExtensionSupported(Extensions.SCREENSHOTER_ASYNC_CAPTURE)) {
+                testAsyncCapture(img);
+            }
+            if (JBR.isExtensionSupported(Extensions.SCREENSHOTER_FRAME_STREAM)) {
+                testFrameStream();
+            }
+            if (JBR.isExtensionSupported(Extensions.SCREENSHOTER_SCALED_CAPTURE)) {
+                testScaledCapture(clientBounds.width, clientBounds.height);
+            }
+            if (JBR.isExtensionSupported(Extensions.SCREENSHOTER_CAPTURE_SESSION)) {
+                testCaptureSession(robot, clientBounds.width, clientBounds.height);
+            }
         } finally {
             SwingUtilities.invokeAndWait(() -> {
                 frame.dispose();
@@ -199,6 +222,156 @@ public class BackbufferScreenshoter {
         }
     }
 
+    static void testBufferCapture(int width, int height) {
+        System.out.println("=== Testing getWindowBackbufferArea() with a caller-supplied buffer");
+        var screenshoter = JBR.getScreenshoter(Extensions.SCREENSHOTER_BUFFER_CAPTURE);
+        int stride = width + 3;
+        int[] pixels = new int[stride * height + 1];
+        var area = new Rectangle(0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE);
+        if (!screenshoter.getWindowBackbufferArea(frame, area, pixels, 1, stride, BufferedImage.TYPE_INT_ARGB)) {
+            throw new RuntimeException("getWindowBackbufferArea() didn't capture a visible window into a buffer");
+        }
+        if (area.width != width || area.height != height) {
+            throw new RuntimeException("getWindowBackbufferArea() captured wrong area: " + area);
+        }
+        var centerPixel = pixels[1 + (height / 2) * stride + width / 2];
+        if (centerPixel != Color.GREEN.getRGB()) {
+            throw new RuntimeException("getWindowBackbufferArea() captured a wrong color: " + Integer.toHexString(centerPixel)
+                    + ", expected: " + Integer.toHexString(Color.GREEN.getRGB()));
+        }
+        if (pixels[0] != 0 || pixels[stride] != 0) {
+            throw new RuntimeException("getWindowBackbufferArea() wrote outside of the requested area");
+        }
+
+        boolean ok = false;
+        try {
+            screenshoter.getWindowBackbufferArea(frame, new Rectangle(0, 0, width, height),
+                    IntBuffer.allocate(width), width, BufferedImage.TYPE_INT_ARGB);
+        } catch (IllegalArgumentException e) {
+            ok = true;
+        }
+        if (!ok) {
+            throw new RuntimeException("getWindowBackbufferArea() with a small buffer didn't throw IAE");
+        }
+    }
+
+    static void testAsyncCapture(BufferedImage expected) throws Exception {
+        System.out.println("=== Testing getWindowBackbufferAreaAsync()");
+        var executor = Executors.newSingleThreadExecutor();
+        try {
+            var future = JBR.getScreenshoter(Extensions.SCREENSHOTER_ASYNC_CAPTURE).getWindowBackbufferAreaAsync(
+                    frame, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, executor);
+            var img = future.get(5, TimeUnit.SECONDS);
+            if (img == null || img.getWidth() != expected.getWidth() || img.getHeight() != expected.getHeight()) {
+                throw new RuntimeException("getWindowBackbufferAreaAsync() returned a wrong image: " + img);
+            }
+            var centerPixel = img.getRGB(img.getWidth() / 2, img.getHeight() / 2);
+            if (centerPixel != Color.GREEN.getRGB()) {
+                throw new RuntimeException("getWindowBackbufferAreaAsync() returned an image with a wrong color: "
+                        + Integer.toHexString(centerPixel) + ", expected: " + Integer.toHexString(Color.GREEN.getRGB()));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    static void testFrameStream() throws Exception {
+        System.out.println("=== Testing startFrameStream()");
+        var stream = JBR.getScreenshoter(Extensions.SCREENSHOTER_FRAME_STREAM)
+                .startFrameStream(frame, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE, 30, 2);
+        try {
+            var first = pollFrame(stream);
+            var second = pollFrame(stream);
+            if (second.getTimestamp() <= first.getTimestamp()) {
+                throw new RuntimeException("Frame timestamps are not increasing");
+            }
+            var area = first.getArea();
+            var centerPixel = first.getPixels().get(first.getPixels().position() +
+                    area.height / 2 * first.getScanlineStride() + area.width / 2);
+            if (centerPixel != Color.GREEN.getRGB()) {
+                throw new RuntimeException("Frame stream captured a wrong color: " + Integer.toHexString(centerPixel)
+                        + ", expected: " + Integer.toHexString(Color.GREEN.getRGB()));
+            }
+
+            // Both buffers are held, so new frames must be dropped.
+            Thread.sleep(500);
+            if (stream.getDroppedFrameCount() == 0) {
+                throw new RuntimeException("Frame stream didn't drop frames while all buffers were in use");
+            }
+            first.release();
+            second.release();
+            pollFrame(stream).release();
+        } finally {
+            stream.close();
+        }
+    }
+
+    static Screenshoter.Frame pollFrame(Screenshoter.FrameStream stream) throws Exception {
+        for (int i = 0; i < 100; i++) {
+            var frame = stream.poll();
+            if (frame != null) return frame;
+            Thread.sleep(20);
+        }
+        throw new RuntimeException("Frame stream didn't capture a frame");
+    }
+
+    static void testScaledCapture(int width, int height) {
+        System.out.println("=== Testing scaled getWindowBackbufferArea()");
+        var screenshoter = JBR.getScreenshoter(Extensions.SCREENSHOTER_SCALED_CAPTURE);
+        var img = screenshoter.getWindowBackbufferArea(frame, 0, 0, Integer.MAX_VALUE, Integer.MAX_VALUE,
+                width / 2, height / 2);
+        if (img == null || img.getWidth() != width / 2 || img.getHeight() != height / 2) {
+            throw new RuntimeException("Scaled getWindowBackbufferArea() returned a wrong image: " + img);
+        }
+        var centerPixel = img.getRGB(img.getWidth() / 2, img.getHeight() / 2);
+        if (centerPixel != Color.GREEN.getRGB()) {
+            throw new RuntimeException("Scaled getWindowBackbufferArea() returned an image with a wrong color: "
+                    + Integer.toHexString(centerPixel) + ", expected: " + Integer.toHexString(Color.GREEN.getRGB()));
+        }
+
+        boolean ok = false;
+        try {
+            screenshoter.getWindowBackbufferArea(frame, 0, 0, width, height, 0, 1);
+        } catch (IllegalArgumentException e) {
+            ok = true;
+        }
+        if (!ok) {
+            throw new RuntimeException("Scaled getWindowBackbufferArea() with a zero target size didn't throw IAE");
+        }
+    }
+
+    static void testCaptureSession(Robot robot, int width, int height) throws Exception {
+        System.out.println("=== Testing incremental capture session");
+        var session = JBR.getScreenshoter(Extensions.SCREENSHOTER_CAPTURE_SESSION).createCaptureSession(frame);
+        try {
+            var changes = session.capture();
+            if (changes == null || changes.length != 1 || !changes[0].equals(new Rectangle(0, 0, width, height))) {
+                throw new RuntimeException("First capture didn't report the whole client area: " + Arrays.toString(changes));
+            }
+            changes = session.capture();
+            if (changes == null || changes.length != 0) {
+                throw new RuntimeException("Capture of an unchanged window reported changes: " + Arrays.toString(changes));
+            }
+
+            SwingUtilities.invokeAndWait(() -> frame.getContentPane().setBackground(Color.RED));
+            robot.waitForIdle();
+            robot.delay(1000);
+
+            changes = session.capture();
+            if (changes == null || changes.length == 0) {
+                throw new RuntimeException("Capture of a repainted window didn't report changes");
+            }
+            var pixel = IntBuffer.allocate(1);
+            session.getPixels(new Rectangle(width / 2, height / 2, 1, 1), pixel, 1);
+            if (pixel.get(0) != Color.RED.getRGB()) {
+                throw new RuntimeException("Capture session returned a wrong color: " + Integer.toHexString(pixel.get(0))
+                        + ", expected: " + Integer.toHexString(Color.RED.getRGB()));
+            }
+        } finally {
+            session.close();
+        }
+    }
+
     static void testServiceUnavailable() throws Exception {
         Robot robot = new Robot();
         SwingUtilities.invokeAndWait(() -> {
@@ -20,10 +20,13 @@
   @run main/othervm -Djava2d.font.subpixelResolution=1x1 FontExtensionsTest
 */
 
+import com.jetbrains.Extensions;
 import com.jetbrains.FontExtensions;
 import com.jetbrains.JBR;
 
 import java.awt.*;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
 import java.awt.font.TextAttribute;
 import java.awt.image.BufferedImage;
 import java.lang.annotation.Retention;
@@ -173,6 +176,76 @@ public class FontExtensionsTest {
         return textDrawingEquals(BASE_FONT, fontWithFeatures(), TEST_STRING);
     }
 
+    @JBRTest
+    private static Boolean testInternFontWithFeatures() {
+        if (!JBR.isExtensionSupported(Extensions.FONT_INTERNING)) return true;
+        FontExtensions extensions = JBR.getFontExtensions(Extensions.FONT_INTERNING);
+        Font font = extensions.internFontWithFeatures(BASE_FONT, "zero", "frac=0");
+        return font == extensions.internFontWithFeatures(BASE_FONT, "frac=0", "zero=1") &&
+                font != extensions.internFontWithFeatures(BASE_FONT, "zero") &&
+                textDrawingEquals(font, fontWithFeatures("zero", "frac=0"), TEST_STRING);
+    }
+
+    @JBRTest
+    private static Boolean testAvailableFeatureSet() {
+        if (!JBR.isExtensionSupported(Extensions.FONT_FEATURE_SET)) return true;
+        FontExtensions extensions = JBR.getFontExtensions(Extensions.FONT_FEATURE_SET);
+        FontExtensions.FeatureSet set = extensions.getAvailableFeatureSet(BASE_FONT);
+        if (set != extensions.getAvailableFeatureSet(BASE_FONT.deriveFont(24f))) return false;
+        Set<String> expected = new HashSet<>(extensions.getAvailableFeatures(BASE_FONT));
+        return set.size() == expected.size() && expected.equals(new HashSet<>(Arrays.asList(set.toArray()))) &&
+                set.contains(FontExtensions.FeatureTag.ZERO) == expected.contains(FontExtensions.FeatureTag.ZERO);
+    }
+
+    @JBRTest
+    private static Boolean testSubpixelResolutionControl() {
+        if (!JBR.isExtensionSupported(Extensions.SUBPIXEL_RESOLUTION_CONTROL)) return true;
+        FontExtensions extensions = JBR.getFontExtensions(Extensions.SUBPIXEL_RESOLUTION_CONTROL);
+        Dimension defaultResolution = extensions.getSubpixelResolution();
+        extensions.setSubpixelResolution(10, 20, new Dimension(4, 2));
+        try {
+            if (!extensions.getSubpixelResolution(15).equals(new Dimension(4, 2)) ||
+                    !extensions.getSubpixelResolution(20).equals(defaultResolution)) return false;
+            getImageWithString(BASE_FONT.deriveFont(15f), TEST_STRING);
+            FontExtensions.GlyphCacheStatistics statistics = extensions.getGlyphCacheStatistics();
+            return statistics.getGlyphCount() > 0 && statistics.getMemoryUsage() > 0;
+        } finally {
+            extensions.setSubpixelResolution(10, 20, null);
+        }
+    }
+
+    private static Boolean testShapingCache(FontExtensions.ShapingCache cache) {
+        Font font = fontWithFeatures(FontExtensions.FeatureTag.ZERO);
+        FontRenderContext context = new FontRenderContext(null, true, true);
+        long hits = cache.getHitCount(), misses = cache.getMissCount();
+        FontExtensions.ShapedRun run = cache.shape(font, context, TEST_STRING);
+        if (cache.shape(font, context, TEST_STRING) != run) return false;
+        if (cache.getHitCount() != hits + 1 || cache.getMissCount() != misses + 1) return false;
+        GlyphVector gv = font.layoutGlyphVector(context, TEST_STRING.toCharArray(), 0, TEST_STRING.length(),
+                Font.LAYOUT_LEFT_TO_RIGHT);
+        if (!Arrays.equals(run.getGlyphCodes(), gv.getGlyphCodes(0, gv.getNumGlyphs(), null))) return false;
+        if (run.getAdvances().length != gv.getNumGlyphs() || run.getClusters().length != gv.getNumGlyphs()) return false;
+        cache.clear();
+        return cache.shape(font, context, TEST_STRING) != run && cache.getMissCount() == misses + 2;
+    }
+
+    @JBRTest
+    private static Boolean testReferenceShapingCache() {
+        FontExtensions.ShapingCache cache = new FontExtensions.ReferenceShapingCache(2);
+        if (!testShapingCache(cache)) return false;
+        FontRenderContext context = new FontRenderContext(null, true, true);
+        FontExtensions.ShapedRun run = cache.shape(BASE_FONT, context, "a");
+        cache.shape(BASE_FONT, context, "b");
+        cache.shape(BASE_FONT, context, "c");
+        return cache.shape(BASE_FONT, context, "a") != run;
+    }
+
+    @JBRTest
+    private static Boolean testJBRShapingCache() {
+        if (!JBR.isExtensionSupported(Extensions.SHAPING_CACHE)) return true;
+        return testShapingCache(JBR.getFontExtensions(Extensions.SHAPING_CACHE).getShapingCache());
+    }
+
     public static void main(final String[] args) {
         if (!JBR.isFontExtensionsSupported()) {
             throw new RuntimeException("JBR FontExtension API is not available");
@@ -19,6 +19,7 @@
  * @summary verify the implementation of FontMetricsAccessor in JBR API
  */
 
+import com.jetbrains.Extensions;
 import com.jetbrains.FontMetricsAccessor;
 import com.jetbrains.JBR;
 
@@ -26,6 +27,7 @@ import java.awt.*;
 import java.awt.font.FontRenderContext;
 import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 public class FontMetricsAccessorTest {
     private static final FontMetricsAccessor ACCESSOR = JBR.getFontMetricsAccessor();
@@ -38,9 +40,13 @@ public class FontMetricsAccessorTest {
             throw new RuntimeException("JBR FontMetricsAccessor API is not available");
         }
         testGetMetricsInstance();
+        testGetMetricsConcurrently();
         testNotRoundedMetrics();
+        testBulkWidths();
         testOverriding();
+        testTableOverriding();
         testRemoveAllOverrides();
+        testBatchOverriding();
     }
 
     private static void testGetMetricsInstance() {
@@ -58,6 +64,40 @@ public class FontMetricsAccessorTest {
         }
     }
 
+    // The repository has no benchmark harness, so this multi-threaded check
+    // replaces a JMH benchmark of the lock-free cache hit path.
+    private static void testGetMetricsConcurrently() {
+        Font font = FONT.deriveFont(13f);
+        FontMetrics[] results = new FontMetrics[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    FontMetrics metrics = ACCESSOR.getMetrics(font, CONTEXT);
+                    if (results[index] != null && results[index] != metrics) {
+                        results[index] = null;
+                        return;
+                    }
+                    results[index] = metrics;
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        for (FontMetrics metrics : results) {
+            if (metrics == null || metrics != results[0]) {
+                throw new RuntimeException("Different font metrics instances returned for the same font and context");
+            }
+        }
+    }
+
     private static void testNotRoundedMetrics() {
         FontMetrics baseMetrics = ACCESSOR.getMetrics(FONT, CONTEXT);
         for (char character = 'A'; character <= 'Z'; character++) {
@@ -80,6 +120,40 @@ public class FontMetricsAccessorTest {
         }
     }
 
+    private static void testBulkWidths() {
+        if (!JBR.isExtensionSupported(Extensions.FONT_METRICS_BULK_WIDTHS)) return;
+
+        FontMetricsAccessor accessor = JBR.getFontMetricsAccessor(Extensions.FONT_METRICS_BULK_WIDTHS);
+        FontMetrics metrics = ACCESSOR.getMetrics(FONT, CONTEXT);
+        String text = "Hello, \uD83D\uDE00 world!";
+        int[] codePoints = text.codePoints().toArray();
+        float[] expected = new float[codePoints.length];
+        for (int i = 0; i < codePoints.length; i++) {
+            expected[i] = ACCESSOR.codePointWidth(metrics, codePoints[i]);
+        }
+
+        float[] fromString = new float[codePoints.length + 1];
+        int count = accessor.codePointWidths(metrics, text, 0, text.length(), fromString, 1);
+        if (count != codePoints.length) {
+            throw new RuntimeException("Unexpected code point count: count=" + count + ", expected=" + codePoints.length);
+        }
+        float[] fromChars = new float[codePoints.length];
+        count = accessor.codePointWidths(metrics, text.toCharArray(), 0, text.length(), fromChars, 0);
+        if (count != codePoints.length) {
+            throw new RuntimeException("Unexpected code point count: count=" + count + ", expected=" + codePoints.length);
+        }
+        float[] fromCodePoints = new float[codePoints.length];
+        accessor.codePointWidths(metrics, codePoints, 0, codePoints.length, fromCodePoints, 0);
+
+        for (int i = 0; i < codePoints.length; i++) {
+            if (fromString[i + 1] != expected[i] || fromChars[i] != expected[i] || fromCodePoints[i] != expected[i]) {
+                throw new RuntimeException("Bulk advance doesn't match: codePoint=" + codePoints[i] +
+                        ", expected=" + expected[i] + ", fromString=" + fromString[i + 1] +
+                        ", fromChars=" + fromChars[i] + ", fromCodePoints=" + fromCodePoints[i]);
+            }
+        }
+    }
+
     private static void testOverriding() {
         FontMetrics metrics = ACCESSOR.getMetrics(FONT, CONTEXT);
 
@@ -128,6 +202,41 @@ public class FontMetricsAccessorTest {
         }
     }
 
+    private static void testTableOverriding() {
+        if (!JBR.isExtensionSupported(Extensions.FONT_METRICS_TABLE_OVERRIDE)) return;
+
+        FontMetricsAccessor accessor = JBR.getFontMetricsAccessor(Extensions.FONT_METRICS_TABLE_OVERRIDE);
+        FontMetrics metrics = accessor.getMetrics(FONT, CONTEXT);
+
+        float aWidth = accessor.codePointWidth(metrics, 'A');
+        float dWidth = accessor.codePointWidth(metrics, 'D');
+        float xWidth = accessor.codePointWidth(metrics, 'X');
+
+        accessor.setOverride(metrics, new int[] {'B', 'D', 'X', 'X'}, new float[] {Float.NaN, 100f});
+
+        if (!accessor.hasOverride(metrics)) {
+            throw new RuntimeException("Table override is not reported");
+        }
+        if (accessor.codePointWidth(metrics, 'A') != aWidth || accessor.codePointWidth(metrics, 'D') != dWidth) {
+            throw new RuntimeException("Table override works where it shouldn't");
+        }
+        if (accessor.codePointWidth(metrics, 'X') != 100f) {
+            throw new RuntimeException("Table override doesn't work: xWidthAfterOverride=" +
+                    accessor.codePointWidth(metrics, 'X'));
+        }
+
+        accessor.setOverride(metrics, null);
+
+        if (accessor.hasOverride(metrics) || accessor.codePointWidth(metrics, 'X') != xWidth) {
+            throw new RuntimeException("Table override has an effect after reset");
+        }
+
+        try {
+            accessor.setOverride(metrics, new int[] {'X', 'Y', 'A', 'B'}, new float[] {1f, 2f});
+            throw new RuntimeException("Unsorted ranges are accepted");
+        } catch (IllegalArgumentException ignore) {}
+    }
+
     private static void testRemoveAllOverrides() {
         FontMetrics m1 = ACCESSOR.getMetrics(FONT, CONTEXT);
         FontMetrics m2 = ACCESSOR.getMetrics(FONT.deriveFont(24f), CONTEXT);
@@ -151,4 +260,60 @@ public class FontMetricsAccessorTest {
                     + ", m1WidthAfterReset=" + m1WidthAfterReset + ", m2WidthAfterReset=" + m2WidthAfterReset);
         }
     }
+
+    private static void testBatchOverriding() {
+        if (!JBR.isExtensionSupported(Extensions.FONT_METRICS_BATCH_OVERRIDE)) return;
+
+        FontMetricsAccessor accessor = JBR.getFontMetricsAccessor(Extensions.FONT_METRICS_BATCH_OVERRIDE);
+
+        FontMetrics m1 = accessor.getMetrics(FONT, CONTEXT);
+        FontMetrics m2 = accessor.getMetrics(FONT.deriveFont(24f), CONTEXT);
+
+        float m2Width = accessor.codePointWidth(m2, 'B');
+
+        accessor.setOverrides(new FontMetrics[] {m1, m2}, new FontMetricsAccessor.Overrider[] {cp -> 12345f, cp -> 67890f});
+
+        if (accessor.codePointWidth(m1, 'A') != 12345f || accessor.codePointWidth(m2, 'B') != 67890f) {
+            throw new RuntimeException("Batch override doesn't work");
+        }
+        if (accessor.getOverriddenMetrics().length != 2) {
+            throw new RuntimeException("Unexpected overridden metrics: " + Arrays.toString(accessor.getOverriddenMetrics()));
+        }
+
+        accessor.setOverrides(new FontMetrics[] {m2}, new FontMetricsAccessor.Overrider[] {null});
+
+        if (accessor.hasOverride(m2) || accessor.codePointWidth(m2, 'B') != m2Width) {
+            throw new RuntimeException("Batch override has an effect after removal");
+        }
+        FontMetrics[] overridden = accessor.getOverriddenMetrics();
+        if (overridden.length != 1 || overridden[0] != m1) {
+            throw new RuntimeException("Unexpected overridden metrics: " + Arrays.toString(overridden));
+        }
+
+        accessor.removeAllOverrides();
+
+        if (accessor.getOverriddenMetrics().length != 0) {
+            throw new RuntimeException("Overridden metrics are reported after clearing");
+        }
+
+        accessor.setOverrides(new FontMetrics[] {m1, m2},
+                new int[][] {{'A', 'Z'}, {'B', 'B'}}, new float[][] {{12345f}, {67890f}});
+
+        if (accessor.codePointWidth(m1, 'A') != 12345f || accessor.codePointWidth(m2, 'B') != 67890f) {
+            throw new RuntimeException("Batch table override doesn't work");
+        }
+
+        accessor.setOverrides(new FontMetrics[] {m2}, new int[][] {null}, new float[][] {null});
+
+        if (accessor.hasOverride(m2) || accessor.codePointWidth(m2, 'B') != m2Width) {
+            throw new RuntimeException("Batch table override has an effect after removal");
+        }
+
+        accessor.removeAllOverrides();
+
+        try {
+            accessor.setOverrides(new FontMetrics[] {m1}, new int[][] {{'X', 'Y', 'A', 'B'}}, new float[][] {{1f, 2f}});
+            throw new RuntimeException("Unsorted ranges are accepted in a batch");
+        } catch (IllegalArgumentException ignore) {}
+    }
 }
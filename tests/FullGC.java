@@ -27,13 +27,16 @@
  * @run main/othervm -XX:+UseSerialGC -Xmx2G FullGC
  * @run main/othervm -XX:+UnlockExperimentalVMOptions -XX:+UseEpsilonGC -Xmx2G FullGC
  */
+import com.jetbrains.Extensions;
 import com.jetbrains.JBR;
+import com.jetbrains.SystemUtils;
 
 import java.lang.ref.SoftReference;
 import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 public class FullGC {
     private static final List<SoftReference<Object>> softReferences = new ArrayList<>();
@@ -83,6 +86,25 @@ public class FullGC {
                 }
             }
         }
+
+        if (JBR.isExtensionSupported(Extensions.ASYNC_GC)) {
+            testAsyncGC();
+        }
+    }
+
+    private static void testAsyncGC() throws Exception {
+        System.out.println("\n\nAsynchronous GC");
+        long weakRefsBefore = countLiveWeakRefs();
+        SystemUtils.GCResult result = JBR.getSystemUtils(Extensions.ASYNC_GC).fullGCAsync(0).get(1, TimeUnit.MINUTES);
+        System.out.printf("Pause %d ns, reclaimed %d bytes, cleared %d soft and %d weak references, committed %d -> %d\n",
+                result.getPauseTime(), result.getReclaimedBytes(), result.getClearedSoftReferences(),
+                result.getClearedWeakReferences(), result.getCommittedBefore(), result.getCommittedAfter());
+        if (result.getPauseTime() < 0 || result.getReclaimedBytes() < 0 || result.getCommittedAfter() <= 0) {
+            throw new RuntimeException("Invalid GC result");
+        }
+        if (result.getClearedWeakReferences() < weakRefsBefore - countLiveWeakRefs()) {
+            throw new RuntimeException("GC result doesn't account for all cleared weak references");
+        }
     }
 
     private static long countLiveSoftRefs() {
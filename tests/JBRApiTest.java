@@ -42,6 +42,10 @@ public class JBRApiTest {
         IGNORED_SERVICES.add("com.jetbrains.RoundedCornersManager");
         IGNORED_SERVICES.add("com.jetbrains.SharedTextures"); // only supported for the Metal pipeline
         IGNORED_SERVICES.add("com.jetbrains.Vulkan"); // only supported for the WLToolkit
+        IGNORED_EXTENSIONS.add("SOFTWARE_TEXTURES");
+        IGNORED_EXTENSIONS.add("VULKAN_DEVICE_SELECTION");
+        IGNORED_EXTENSIONS.add("VULKAN_STATE_TRACKING");
+        IGNORED_EXTENSIONS.add("VULKAN_UPLOAD_PATH");
         String os = System.getProperty("os.name").toLowerCase();
         if (os.contains("linux")) {
             IGNORED_SERVICES.add("com.jetbrains.WindowDecorations");
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2026 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * @test
+ * @summary Verifies NativeRasterLoader helpers
+ * @run main NativeRasterLoaderTest
+ */
+
+import com.jetbrains.Extensions;
+import com.jetbrains.JBR;
+import com.jetbrains.NativeRasterLoader;
+
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.awt.image.VolatileImage;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class NativeRasterLoaderTest {
+
+    public static void main(String[] args) throws Exception {
+        testCoalesceOverlapping();
+        testCoalesceDistant();
+        testCoalesceBuffer();
+        testUploadPipeline();
+        testUploadPipelineRejected();
+        if (!GraphicsEnvironment.isHeadless() && JBR.isExtensionSupported(Extensions.NATIVE_RASTER_BUFFERS)) {
+            testLoadFromBuffer();
+        }
+    }
+
+    private static void testUploadPipeline() throws Exception {
+        int width = 16, height = 8, frames = 10;
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            NativeRasterLoader.UploadPipeline pipeline = new NativeRasterLoader.UploadPipeline(null, width, height, 2, executor);
+            BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+            CompletableFuture<?>[] fences = new CompletableFuture<?>[frames];
+            for (int frame = 0; frame < frames; frame++) {
+                ByteBuffer buffer = pipeline.acquireBuffer();
+                IntBuffer pixels = buffer.asIntBuffer();
+                while (pixels.hasRemaining()) pixels.put(0xff000000 | frame);
+                // The first frame fills the whole image, others update a single row each.
+                IntBuffer rects = IntBuffer.wrap(new int[] {0, frame % height, width, 1});
+                fences[frame] = pipeline.upload(buffer, image, rects, frame == 0 ? 0 : 1);
+            }
+            CompletableFuture.allOf(fences).get(10, TimeUnit.SECONDS);
+            for (int y = 0; y < height; y++) {
+                int lastFrame = y;
+                for (int frame = 1; frame < frames; frame++) if (frame % height == y) lastFrame = frame;
+                int expected = 0xff000000 | lastFrame;
+                if (image.getRGB(width / 2, y) != expected) {
+                    throw new RuntimeException("Wrong pixel at row " + y + ": " + Integer.toHexString(image.getRGB(width / 2, y)));
+                }
+            }
+            if (pipeline.getStallTime() < 0) {
+                throw new RuntimeException("Negative stall time");
+            }
+            ByteBuffer buffer = pipeline.acquireBuffer();
+            pipeline.upload(buffer, image, null, 0).get(10, TimeUnit.SECONDS);
+            if (!pipeline.upload(buffer, image, null, 0).isCompletedExceptionally()) {
+                throw new RuntimeException("Double upload of a buffer was not rejected");
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void testUploadPipelineRejected() throws Exception {
+        int width = 4, height = 4, bufferCount = 2;
+        Executor executor = task -> { throw new RejectedExecutionException(); };
+        NativeRasterLoader.UploadPipeline pipeline = new NativeRasterLoader.UploadPipeline(null, width, height, bufferCount, executor);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        // Buffers must be returned to the pipeline, otherwise acquiring would block after bufferCount uploads.
+        for (int i = 0; i < bufferCount * 2; i++) {
+            CompletableFuture<Void> fence = pipeline.upload(pipeline.acquireBuffer(), image, null, 0);
+            try {
+                fence.getNow(null);
+                throw new RuntimeException("Rejected upload is not completed exceptionally");
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof RejectedExecutionException)) throw e;
+            }
+        }
+        if (pipeline.getStallTime() != 0) {
+            throw new RuntimeException("Rejected uploads stalled the pipeline");
+        }
+    }
+
+    private static void testLoadFromBuffer() {
+        int width = 20, height = 10;
+        VolatileImage vi = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                .getDefaultConfiguration().createCompatibleVolatileImage(width, height, Transparency.TRANSLUCENT);
+        ByteBuffer raster = ByteBuffer.allocateDirect(width * height * 4).order(ByteOrder.nativeOrder());
+        IntBuffer pixels = raster.asIntBuffer();
+        while (pixels.hasRemaining()) pixels.put(0xff00ff00);
+        IntBuffer rects = ByteBuffer.allocateDirect(16).order(ByteOrder.nativeOrder()).asIntBuffer();
+        rects.put(new int[] {0, 0, width, height}).flip();
+
+        NativeRasterLoader loader = JBR.getNativeRasterLoader(Extensions.NATIVE_RASTER_BUFFERS);
+        loader.loadNativeRaster(vi, raster, width, height, rects, 1);
+        int pixel = vi.getSnapshot().getRGB(width / 2, height / 2);
+        if (pixel != 0xff00ff00) {
+            throw new RuntimeException("Wrong pixel loaded from buffer: " + Integer.toHexString(pixel));
+        }
+
+        expectIAE(() -> loader.loadNativeRaster(vi, ByteBuffer.allocate(width * height * 4), width, height, null, 0),
+                "heap raster buffer");
+        expectIAE(() -> loader.loadNativeRaster(vi, raster, width, height + 1, null, 0), "small raster buffer");
+        rects.put(2, width + 1);
+        expectIAE(() -> loader.loadNativeRaster(vi, raster, width, height, rects, 1), "rect outside of the image");
+    }
+
+    private static void expectIAE(Runnable action, String description) {
+        try {
+            action.run();
+        } catch (IllegalArgumentException e) {
+            return;
+        }
+        throw new RuntimeException("Loading with " + description + " didn't throw IAE");
+    }
+
+    private static void testCoalesceOverlapping() {
+        NativeRasterLoader.RectCoalescer coalescer = new NativeRasterLoader.RectCoalescer(0.25f);
+        int[] rects = {
+                0, 0, 10, 10,
+                5, 0, 10, 10,
+                0, 0, 15, 10,
+                3, 3, 0, 10,
+                14, 0, 1, 10
+        };
+        int count = coalescer.coalesce(rects, 5);
+        check(count, 1, rects, 0, 0, 15, 10);
+        if (coalescer.getInputRectCount() != 5 || coalescer.getOutputRectCount() != 1) {
+            throw new RuntimeException("Wrong statistics: in=" + coalescer.getInputRectCount() +
+                    ", out=" + coalescer.getOutputRectCount());
+        }
+    }
+
+    private static void testCoalesceDistant() {
+        int[] rects = {
+                0, 0, 10, 10,
+                100, 100, 10, 10
+        };
+        int count = new NativeRasterLoader.RectCoalescer(0.5f).coalesce(rects, 2);
+        if (count != 2) {
+            throw new RuntimeException("Distant rects were merged: " + Arrays.toString(rects));
+        }
+        count = new NativeRasterLoader.RectCoalescer(1f).coalesce(rects, 2);
+        check(count, 1, rects, 0, 0, 110, 110);
+    }
+
+    private static void testCoalesceBuffer() {
+        IntBuffer rects = IntBuffer.allocate(9);
+        rects.put(-1).put(new int[] {0, 0, 10, 10, 0, 10, 10, 10}).position(1);
+        int count = new NativeRasterLoader.RectCoalescer(0f).coalesce(rects, 2);
+        if (rects.position() != 1 || rects.get(0) != -1) {
+            throw new RuntimeException("Buffer outside of rects was modified");
+        }
+        check(count, 1, Arrays.copyOfRange(rects.array(), 1, 9), 0, 0, 10, 20);
+    }
+
+    private static void check(int count, int expectedCount, int[] rects, int... expected) {
+        if (count != expectedCount || !Arrays.equals(Arrays.copyOf(rects, expected.length), expected)) {
+            throw new RuntimeException("Wrong coalescing result: count=" + count + ", rects=" + Arrays.toString(rects));
+        }
+    }
+}
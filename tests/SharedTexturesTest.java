@@ -0,0 +1,202 @@
+/*
+ * Copyright 2026 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * @test
+ * @summary Verifies SharedTextures.TexturePool and software textures
+ * @run main SharedTexturesTest
+ */
+
+import com.jetbrains.Extensions;
+import com.jetbrains.JBR;
+import com.jetbrains.SharedTextures;
+
+import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SharedTexturesTest {
+
+    public static void main(String[] args) {
+        testTexturePool();
+        testTexturePoolRace();
+        // Software textures are meant to work without a GPU, so they are tested in headless mode too.
+        SharedTextures service = JBR.getSharedTextures(Extensions.SOFTWARE_TEXTURES);
+        if (service != null) {
+            testSoftwareTexture(service);
+        }
+    }
+
+    private static void testTexturePool() {
+        int[] wrapped = new int[1], flushed = new int[1];
+        SharedTextures service = new SharedTextures() {
+            @Override
+            public int getTextureType() {
+                return 0;
+            }
+
+            @Override
+            public Image wrapTexture(GraphicsConfiguration gc, long texture) {
+                wrapped[0]++;
+                return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB) {
+                    @Override
+                    public void flush() {
+                        flushed[0]++;
+                    }
+                };
+            }
+
+            @Override
+            public Image wrapTexture(GraphicsConfiguration gc, ByteBuffer pixels, int width, int height, int scanlineStride) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        GraphicsConfiguration gc1 = new TestGraphicsConfiguration(), gc2 = new TestGraphicsConfiguration();
+        SharedTextures.TexturePool pool = new SharedTextures.TexturePool(service, 2);
+
+        Image image = pool.get(gc1, 1);
+        check(pool.get(gc1, 1) == image, "Cached image is not reused");
+        check(pool.get(gc2, 1) != image, "Image is reused for a different graphics configuration");
+        check(pool.get(gc1, 1) == image && flushed[0] == 0, "Image for a previous graphics configuration is dropped");
+        pool.remove(1);
+        check(flushed[0] == 2, "Removed images are not flushed");
+        pool.get(gc1, 2);
+        pool.get(gc1, 3);
+        pool.get(gc1, 4);
+        check(pool.getEvictionCount() == 1 && flushed[0] == 3, "Pool is not bounded");
+        pool.remove(4);
+        image = pool.get(gc1, 4);
+        check(pool.get(gc1, 4) == image, "Removed image is not wrapped again");
+        check(pool.getHitCount() == 3 && pool.getMissCount() == 6 && wrapped[0] == 6,
+                "Wrong statistics: hits=" + pool.getHitCount() + ", misses=" + pool.getMissCount());
+        pool.clear();
+        check(flushed[0] == 6, "Cleared images are not flushed");
+    }
+
+    private static void testTexturePoolRace() {
+        List<Image> flushed = new ArrayList<>();
+        SharedTextures.TexturePool[] pool = new SharedTextures.TexturePool[1];
+        GraphicsConfiguration gc = new TestGraphicsConfiguration();
+        SharedTextures service = new SharedTextures() {
+            private boolean wrapping;
+
+            @Override
+            public int getTextureType() {
+                return 0;
+            }
+
+            @Override
+            public Image wrapTexture(GraphicsConfiguration gc, long texture) {
+                if (!wrapping) {
+                    // Simulate another thread getting the same texture while this one is wrapping it.
+                    wrapping = true;
+                    pool[0].get(gc, texture);
+                }
+                return new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB) {
+                    @Override
+                    public void flush() {
+                        flushed.add(this);
+                    }
+                };
+            }
+
+            @Override
+            public Image wrapTexture(GraphicsConfiguration gc, ByteBuffer pixels, int width, int height, int scanlineStride) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        pool[0] = new SharedTextures.TexturePool(service, 2);
+
+        Image image = pool[0].get(gc, 1);
+        check(pool[0].get(gc, 1) == image, "Image cached first is not returned to a racing caller");
+        check(flushed.size() == 1 && flushed.get(0) != image, "Wrong image is flushed after a race");
+    }
+
+    private static void testSoftwareTexture(SharedTextures service) {
+        // Unlike screen configurations, a buffered image configuration is available in headless mode.
+        Graphics2D g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+        GraphicsConfiguration gc = g.getDeviceConfiguration();
+        g.dispose();
+        int width = 4, height = 3, stride = 5;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(stride * height * 4).order(ByteOrder.nativeOrder());
+        IntBuffer pixels = buffer.asIntBuffer();
+        while (pixels.hasRemaining()) pixels.put(0xff00ff00);
+        Image image = service.wrapTexture(gc, buffer, width, height, stride);
+        check(image.getWidth(null) == width && image.getHeight(null) == height, "Wrong texture size");
+        check(drawPixel(image) == 0xff00ff00, "Wrong texture color");
+        pixels.put(stride + 1, 0xffff0000);
+        check(drawPixel(image) == 0xffff0000, "Texture pixels are copied");
+
+        try {
+            service.wrapTexture(gc, ByteBuffer.allocate(stride * height * 4), width, height, stride);
+            throw new RuntimeException("Heap buffer is accepted");
+        } catch (IllegalArgumentException ignore) {}
+        try {
+            service.wrapTexture(gc, buffer, width, height + 1, stride);
+            throw new RuntimeException("Small buffer is accepted");
+        } catch (IllegalArgumentException ignore) {}
+    }
+
+    private static int drawPixel(Image image) {
+        BufferedImage target = new BufferedImage(image.getWidth(null), image.getHeight(null), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = target.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return target.getRGB(1, 1);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) throw new RuntimeException(message);
+    }
+
+    private static class TestGraphicsConfiguration extends GraphicsConfiguration {
+        @Override
+        public GraphicsDevice getDevice() {
+            return null;
+        }
+
+        @Override
+        public ColorModel getColorModel() {
+            return ColorModel.getRGBdefault();
+        }
+
+        @Override
+        public ColorModel getColorModel(int transparency) {
+            return ColorModel.getRGBdefault();
+        }
+
+        @Override
+        public AffineTransform getDefaultTransform() {
+            return new AffineTransform();
+        }
+
+        @Override
+        public AffineTransform getNormalizingTransform() {
+            return new AffineTransform();
+        }
+
+        @Override
+        public Rectangle getBounds() {
+            return new Rectangle();
+        }
+    }
+}
@@ -35,6 +35,7 @@
 
 import com.jetbrains.Extensions;
 import com.jetbrains.JBR;
+import com.jetbrains.SystemUtils;
 
 import java.nio.ByteBuffer;
 
@@ -69,6 +70,30 @@ public class ShrinkingGC {
             }
         }
 
+        if (JBR.isExtensionSupported(Extensions.SHRINKING_GC_TARGET)) {
+            SystemUtils systemUtils = JBR.getSystemUtils(Extensions.SHRINKING_GC, Extensions.SHRINKING_GC_TARGET);
+            systemUtils.shrinkingGC();
+            long committedByDefault = Runtime.getRuntime().totalMemory();
+            long committed = systemUtils.shrinkingGC(10);
+            System.out.println("Heap size after shrinkingGC(): " + committedByDefault + ", after shrinkingGC(10): " + committed);
+            // Other collectors may uncommit memory concurrently, so sizes are only compared with G1.
+            if (expectTestToPass) {
+                if (committed != Runtime.getRuntime().totalMemory()) {
+                    throw new RuntimeException("shrinkingGC(int) reported wrong heap size: " + committed
+                            + ", actual: " + Runtime.getRuntime().totalMemory());
+                }
+                if (committed > committedByDefault) {
+                    throw new RuntimeException("shrinkingGC(10) shrank less than shrinkingGC(): " + committed
+                            + " > " + committedByDefault);
+                }
+            }
+            committed = systemUtils.shrinkingGCToSize(0);
+            System.out.println("Heap size after shrinkingGCToSize(0): " + committed);
+            if (committed < retained500m.capacity()) {
+                throw new RuntimeException("shrinkingGCToSize() reported heap smaller than retained memory: " + committed);
+            }
+        }
+
         System.out.println(retained500m);
     }
 }
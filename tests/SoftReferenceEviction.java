@@ -0,0 +1,76 @@
+/*
+ * Copyright 2026 JetBrains s.r.o.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/*
+ * @test
+ * @summary Verifies that soft references are cleared in age order within the budget
+ *          through SystemUtils.clearSoftReferences() API
+ * @run main/othervm -XX:+UseG1GC -Xmx1G SoftReferenceEviction
+ */
+
+import com.jetbrains.Extensions;
+import com.jetbrains.JBR;
+import com.jetbrains.SystemUtils;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SoftReferenceEviction {
+    private static final int REFERENCES = 100;
+    private static final int ALLOCATION_SIZE = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        if (!JBR.isExtensionSupported(Extensions.SOFT_REFERENCE_EVICTION)) {
+            System.out.println("SOFT_REFERENCE_EVICTION extension is not supported, skipping");
+            return;
+        }
+        SystemUtils systemUtils = JBR.getSystemUtils(Extensions.SOFT_REFERENCE_EVICTION);
+
+        List<SoftReference<byte[]>> references = new ArrayList<>();
+        for (int i = 0; i < REFERENCES; i++) {
+            references.add(new SoftReference<>(new byte[ALLOCATION_SIZE]));
+        }
+        // Let soft reference clock advance, then touch the second half of the references.
+        System.gc();
+        Thread.sleep(100);
+        for (int i = REFERENCES / 2; i < REFERENCES; i++) {
+            if (references.get(i).get() == null) throw new RuntimeException("Soft reference cleared by System.gc()");
+        }
+
+        SystemUtils.EvictionResult result = systemUtils.clearSoftReferences(Long.MAX_VALUE, 10);
+        System.out.printf("Cleared %d references (%d bytes), %d remaining\n",
+                result.getClearedCount(), result.getClearedBytes(), result.getRemainingCount());
+        if (result.getClearedCount() != 10) {
+            throw new RuntimeException("Count budget was not respected: " + result.getClearedCount());
+        }
+        if (result.getClearedBytes() <= 0) {
+            throw new RuntimeException("Cleared bytes are not reported: " + result.getClearedBytes());
+        }
+        for (int i = REFERENCES / 2; i < REFERENCES; i++) {
+            if (references.get(i).get() == null) {
+                throw new RuntimeException("Recently accessed soft reference " + i + " was cleared first");
+            }
+        }
+
+        result = systemUtils.clearSoftReferences(ALLOCATION_SIZE * 5L / 2, Integer.MAX_VALUE);
+        System.out.printf("Cleared %d references (%d bytes), %d remaining\n",
+                result.getClearedCount(), result.getClearedBytes(), result.getRemainingCount());
+        if (result.getClearedBytes() > ALLOCATION_SIZE * 5L / 2) {
+            throw new RuntimeException("Byte budget was not respected: " + result.getClearedBytes());
+        }
+    }
+}
@@ -23,9 +23,14 @@
  * @run main/othervm -Dawt.toolkit.name=WLToolkit -Dsun.java2d.vulkan=True VulkanTest
  */
 
+import com.jetbrains.Extensions;
 import com.jetbrains.JBR;
 import com.jetbrains.Vulkan;
 
+import java.awt.GraphicsEnvironment;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
 public class VulkanTest {
 
     public static void main(String[] args) throws Exception {
@@ -33,5 +38,73 @@ public class VulkanTest {
         if (vulkan == null) throw new Error("Vulkan is not available");
         if (vulkan.getDevices() == null) throw new Error("Could not retrieve devices");
         System.out.println("Presentation enabled: " + vulkan.isPresentationEnabled());
+        if (JBR.isExtensionSupported(Extensions.VULKAN_UPLOAD_PATH)) {
+            testUploadPath();
+        }
+        if (JBR.isExtensionSupported(Extensions.VULKAN_STATE_TRACKING)) {
+            testStateTracking();
+        }
+        if (JBR.isExtensionSupported(Extensions.VULKAN_DEVICE_SELECTION)) {
+            testDeviceSelection();
+        }
+    }
+
+    private static void testUploadPath() {
+        Vulkan vulkan = JBR.getVulkan(Extensions.VULKAN_UPLOAD_PATH);
+        for (Vulkan.Device device : vulkan.getDevices()) {
+            if (device.getUploadPath(BufferedImage.TYPE_INT_ARGB_PRE) != Vulkan.Device.UPLOAD_DIRECT) {
+                throw new Error("INT_ARGB_PRE images are not uploaded directly to " + device.getName());
+            }
+            if (device.getUploadPath(BufferedImage.TYPE_BYTE_INDEXED) == Vulkan.Device.UPLOAD_DIRECT) {
+                throw new Error("BYTE_INDEXED images are uploaded directly to " + device.getName());
+            }
+            if (device.getUploadPath(BufferedImage.TYPE_CUSTOM) != Vulkan.Device.UPLOAD_UNSUPPORTED) {
+                throw new Error("CUSTOM images are uploaded to " + device.getName());
+            }
+        }
+    }
+
+    private static void testStateTracking() {
+        Vulkan vulkan = JBR.getVulkan(Extensions.VULKAN_STATE_TRACKING);
+        Vulkan.Snapshot snapshot = vulkan.getSnapshot();
+        if (snapshot.isPresentationEnabled() != vulkan.isPresentationEnabled()) {
+            throw new Error("Snapshot presentation state differs");
+        }
+        if (vulkan.getSnapshot() != snapshot) throw new Error("Snapshot is not reused while the state is unchanged");
+        if (snapshot.getDevices().length != vulkan.getDevices().length) throw new Error("Snapshot devices differ");
+        int capabilities = 0;
+        for (Vulkan.Device device : snapshot.getDevices()) {
+            capabilities |= device.getCapabilities();
+            if (Arrays.stream(snapshot.getDevices(device.getCapabilities())).noneMatch(d -> d.getName().equals(device.getName()))) {
+                throw new Error("Device is filtered out by its own capabilities: " + device.getName());
+            }
+        }
+        if (snapshot.getCapabilities() != capabilities) {
+            throw new Error("Snapshot capabilities are not the union of device capabilities");
+        }
+        if (snapshot.getDevices(Vulkan.Device.CAP_SAMPLED_4BYTE_BIT).length != snapshot.getDevices().length) {
+            throw new Error("Devices are filtered by an always supported capability");
+        }
+        Vulkan.StateListener listener = s -> {};
+        vulkan.addStateListener(listener);
+        vulkan.removeStateListener(listener);
+    }
+
+    private static void testDeviceSelection() {
+        Vulkan vulkan = JBR.getVulkan(Extensions.VULKAN_DEVICE_SELECTION);
+        Vulkan.DeviceSelector selector = Vulkan.DeviceSelector.preferring("DISCRETE_GPU", null, 0);
+        for (Vulkan.Device device : vulkan.getDevices()) {
+            if (selector.rank(device) < 0) throw new Error("Device is excluded without required capabilities");
+        }
+        // Rendering into a volatile image initializes the pipeline.
+        GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                .createCompatibleVolatileImage(1, 1).createGraphics().dispose();
+        Vulkan.Device active = vulkan.getActiveDevice();
+        if (active == null) throw new Error("No active device after the pipeline is initialized");
+        System.out.println("Active device: " + active.getName());
+        if (Arrays.stream(vulkan.getDevices()).noneMatch(d -> d.getName().equals(active.getName()))) {
+            throw new Error("Active device is not one of the available devices");
+        }
+        if (vulkan.setDeviceSelector(selector)) throw new Error("Selector is accepted after the pipeline is initialized");
     }
 }